@@ -0,0 +1,231 @@
+package org.repositoryminer.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.repositoryminer.analysis.AnalysisResult;
+import org.repositoryminer.analysis.AnalyzerType;
+import org.repositoryminer.analysis.IAnalyzer;
+import org.repositoryminer.domain.Class;
+import org.repositoryminer.domain.Method;
+import org.repositoryminer.domain.Package;
+import org.repositoryminer.scm.SCMConfig;
+
+import gastmappers.Language;
+
+/**
+ * Compares the lexer analyzer with the GAST analyzer over the source files of
+ * a directory. The throughput of each analyzer is measured over some rounds,
+ * the first one being a warm up, and the accuracy of the lexer is measured
+ * against the GAST metrics, by file and by method. Methods are matched by class
+ * and name, overloads in the order they are declared.
+ * <p>
+ * Usage: {@code AnalyzerBenchmark <directory> [rounds]}
+ */
+public class AnalyzerBenchmark {
+
+	private static class SourceFile {
+
+		private Path path;
+		private Language language;
+		private String sourceCode;
+
+		private SourceFile(Path path, Language language, String sourceCode) {
+			this.path = path;
+			this.language = language;
+			this.sourceCode = sourceCode;
+		}
+
+	}
+
+	private static class Accuracy {
+
+		private int files;
+		private int exactFileLoc;
+		private int exactFileCyclo;
+		private long fileLocError;
+		private long fileCycloError;
+		private int matchedMethods;
+		private int missedMethods;
+		private int extraMethods;
+		private int exactMethodLoc;
+		private int exactMethodCyclo;
+		private long methodLocError;
+		private long methodCycloError;
+
+		private void add(AnalysisResult expected, AnalysisResult actual) {
+			files++;
+			exactFileLoc += expected.getLoc() == actual.getLoc() ? 1 : 0;
+			exactFileCyclo += expected.getCyclo() == actual.getCyclo() ? 1 : 0;
+			fileLocError += Math.abs(expected.getLoc() - actual.getLoc());
+			fileCycloError += Math.abs(expected.getCyclo() - actual.getCyclo());
+
+			Map<String, Method> actualMethods = indexMethods(actual);
+			for (Map.Entry<String, Method> entry : indexMethods(expected).entrySet()) {
+				Method method = actualMethods.remove(entry.getKey());
+				if (method == null) {
+					missedMethods++;
+					continue;
+				}
+
+				matchedMethods++;
+				exactMethodLoc += entry.getValue().getLoc() == method.getLoc() ? 1 : 0;
+				exactMethodCyclo += entry.getValue().getComplexity() == method.getComplexity() ? 1 : 0;
+				methodLocError += Math.abs(entry.getValue().getLoc() - method.getLoc());
+				methodCycloError += Math.abs(entry.getValue().getComplexity() - method.getComplexity());
+			}
+			extraMethods += actualMethods.size();
+		}
+
+		private void print() {
+			System.out.println(String.format("Accuracy of %s against %s over %d files:", AnalyzerType.LEXER,
+					AnalyzerType.GAST, files));
+			System.out.println(String.format("  file LOC:     %s exact, mean error %.2f", percent(exactFileLoc, files),
+					mean(fileLocError, files)));
+			System.out.println(String.format("  file CYCLO:   %s exact, mean error %.2f",
+					percent(exactFileCyclo, files), mean(fileCycloError, files)));
+			System.out.println(String.format("  methods:      %d matched, %d missed, %d extra", matchedMethods,
+					missedMethods, extraMethods));
+			System.out.println(String.format("  method LOC:   %s exact, mean error %.2f",
+					percent(exactMethodLoc, matchedMethods), mean(methodLocError, matchedMethods)));
+			System.out.println(String.format("  method CYCLO: %s exact, mean error %.2f",
+					percent(exactMethodCyclo, matchedMethods), mean(methodCycloError, matchedMethods)));
+		}
+
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: AnalyzerBenchmark <directory> [rounds]");
+			System.exit(1);
+		}
+
+		int rounds = args.length > 1 ? Math.max(1, Integer.parseInt(args[1])) : 3;
+		List<SourceFile> files = readSourceFiles(Paths.get(args[0]));
+		long bytes = 0;
+		for (SourceFile file : files) {
+			bytes += file.sourceCode.getBytes(StandardCharsets.UTF_8).length;
+		}
+		System.out.println(String.format("%d source files, %d KB, %d rounds.", files.size(), bytes / 1024, rounds));
+		if (files.isEmpty()) {
+			return;
+		}
+
+		Map<AnalyzerType, List<AnalysisResult>> results = new EnumMap<AnalyzerType, List<AnalysisResult>>(
+				AnalyzerType.class);
+		for (AnalyzerType type : AnalyzerType.values()) {
+			results.put(type, measure(type, files, bytes, rounds));
+		}
+
+		Accuracy accuracy = new Accuracy();
+		List<AnalysisResult> expected = results.get(AnalyzerType.GAST);
+		List<AnalysisResult> actual = results.get(AnalyzerType.LEXER);
+		for (int i = 0; i < files.size(); i++) {
+			if (expected.get(i) != null && actual.get(i) != null) {
+				accuracy.add(expected.get(i), actual.get(i));
+			}
+		}
+		accuracy.print();
+	}
+
+	/*
+	 * Analyzes every file in each round, the results of the last round are
+	 * returned, with null for the files the analyzer failed.
+	 */
+	private static List<AnalysisResult> measure(AnalyzerType type, List<SourceFile> files, long bytes, int rounds) {
+		List<AnalysisResult> results = null;
+		long nanos = 0;
+		int failed = 0;
+		for (int round = 0; round < rounds; round++) {
+			Map<Language, IAnalyzer> analyzers = new EnumMap<Language, IAnalyzer>(Language.class);
+			results = new ArrayList<AnalysisResult>(files.size());
+			failed = 0;
+
+			long start = System.nanoTime();
+			for (SourceFile file : files) {
+				IAnalyzer analyzer = analyzers.computeIfAbsent(file.language, type::newAnalyzer);
+				try {
+					results.add(analyzer.analyze(file.sourceCode));
+				} catch (Exception e) {
+					results.add(null);
+					failed++;
+					if (round == 0) {
+						System.err.println(String.format("%s failed on %s: %s", type, file.path, e));
+					}
+				}
+			}
+
+			// the first round only warms up, unless it is the only one
+			if (round > 0 || rounds == 1) {
+				nanos += System.nanoTime() - start;
+			}
+		}
+
+		double seconds = nanos / 1e9 / Math.max(1, rounds - 1);
+		System.out.println(String.format("%s: %.3f s per round, %.1f files/s, %.2f MB/s, %d failed", type, seconds,
+				files.size() / seconds, bytes / seconds / (1024 * 1024), failed));
+		return results;
+	}
+
+	private static List<SourceFile> readSourceFiles(Path root) throws IOException {
+		Map<String, Language> languages = new SCMConfig().getLanguages();
+		languages.put("cs", Language.CSHARP);
+		List<Path> paths;
+		try (Stream<Path> stream = Files.walk(root)) {
+			paths = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+		}
+
+		List<SourceFile> files = new ArrayList<SourceFile>();
+		for (Path path : paths) {
+			String name = path.getFileName().toString();
+			int i = name.lastIndexOf('.');
+			Language language = i < 0 ? null : languages.get(name.substring(i + 1).toLowerCase());
+			if (language != null) {
+				files.add(new SourceFile(path, language, new String(Files.readAllBytes(path), StandardCharsets.UTF_8)));
+			}
+		}
+		return files;
+	}
+
+	/*
+	 * Methods are keyed by class, name and position among their overloads, since
+	 * both analyzers may name the packages differently.
+	 */
+	private static Map<String, Method> indexMethods(AnalysisResult result) {
+		Map<String, Method> methods = new HashMap<String, Method>();
+		Map<String, Integer> overloads = new HashMap<String, Integer>();
+		for (Package pkg : nonNull(result.getPackages())) {
+			for (Class clazz : nonNull(pkg.getClasses())) {
+				for (Method method : nonNull(clazz.getMethods())) {
+					String name = clazz.getName() + "/" + method.getName();
+					int overload = overloads.merge(name, 1, Integer::sum);
+					methods.put(name + "#" + overload, method);
+				}
+			}
+		}
+		return methods;
+	}
+
+	private static <E> List<E> nonNull(List<E> list) {
+		return list != null ? list : new ArrayList<E>();
+	}
+
+	private static String percent(int count, int total) {
+		return total == 0 ? "-" : String.format("%.1f%%", 100.0 * count / total);
+	}
+
+	private static double mean(long sum, int count) {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+}
@@ -1,8 +1,10 @@
 package org.repositoryminer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -16,6 +18,7 @@ import org.repositoryminer.persistence.CommitDAO;
 import org.repositoryminer.persistence.ReferenceDAO;
 import org.repositoryminer.persistence.RepositoryDAO;
 import org.repositoryminer.scm.ISCM;
+import org.repositoryminer.scm.ReachabilityIndex;
 import org.repositoryminer.scm.SCMFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,37 +32,60 @@ public class IncrementalRepositoryExtractor {
 	private static Repository repository;
 	private static Set<Developer> contributos;
 	private static ISCM scm;
+	private static boolean reconciled;
 
 	public static void run(String key) {
+		run(new RepositoryMiner(key));
+	}
+
+	public static void run(RepositoryMiner rm) {
 		LOG.info("Starting extraction process.");
 		
 		RepositoryDAO repoDAO = new RepositoryDAO();
-		repository = Repository.parseDocument(repoDAO.findByKey(key, null));
+		repository = Repository.parseDocument(repoDAO.findByKey(rm.getKey(), null));
 
 		if (repository == null) {
-			throw new RepositoryMinerException("Repository with the key " + key + " was not found.");
+			throw new RepositoryMinerException("Repository with the key " + rm.getKey() + " was not found.");
 		}
 
 		scm = SCMFactory.getSCM(repository.getScm());
-		scm.open(repository.getPath());
+		scm.open(repository.getPath(), rm.getSCMConfig());
 		contributos = new HashSet<Developer>(repository.getContributors());
 		
-		updateReferences();
-		updateCommits();
+		List<String> tips = updateCommits(rm);
+		updateReferences(repository.getMinedTips());
 		
 		repoDAO.updateOnlyContributors(repository.getId(), Developer.toDocumentList(contributos));
+		repoDAO.updateOnlyMinedTips(repository.getId(), tips);
 		
 		scm.close();
 		LOG.info("Extraction finished.");
 	}
 
-	private static void updateReferences() {
+	private static void updateReferences(List<String> minedTips) {
 		LOG.info("Start references extraction process.");
 		List<Reference> references = scm.getReferences();
 
 		ReferenceDAO refDao = new ReferenceDAO();
-		List<Reference> dbReferences = Reference
-				.parseDocuments(refDao.findByRepository(repository.getId(), Projections.exclude("commits")));
+		CommitDAO commitDao = new CommitDAO();
+		List<Reference> dbReferences = Reference.parseDocuments(refDao.findByRepository(repository.getId(), null));
+
+		// the index is updated from the new commits when the stored one is still
+		// valid, otherwise it is built again over the whole history
+		ReachabilityIndex index = null;
+		if (!reconciled) {
+			commitDao.createOrdinalIndex();
+			index = scm.updateReachabilityIndex(references, dbReferences, minedTips,
+					commitDao.findMaxOrdinal(repository.getId()) + 1,
+					hashes -> commitDao.findOrdinals(repository.getId(), hashes));
+		}
+		if (index != null) {
+			commitDao.updateOrdinals(repository.getId(), index.getOrdinals());
+		} else {
+			LOG.info("The reachability index can not be updated, rebuilding it.");
+			index = scm.getReachabilityIndex(references);
+			updateOrdinals(index);
+		}
 
 		Map<String, Reference> dbRefsMap = new HashMap<>();
 		for (Reference ref : dbReferences) {
@@ -69,12 +95,13 @@ public class IncrementalRepositoryExtractor {
 		for (Reference ref : references) {
 			Reference tempRef = dbRefsMap.get(ref.getPath());
 			if (tempRef == null) {
-				ref.setCommits(scm.getCommitsNames(ref));
+				ref.setRepository(repository.getId());
+				ref.setCommitRanges(index.getRanges(ref.getPath()));
 				refDao.insert(ref.toDocument());
-				ref.setCommits(null);
+				ref.setCommitRanges(null);
 			} else {
-				refDao.updateCommitsAndLastCommitDate(tempRef.getId(), scm.getCommitsNames(ref),
-						ref.getLastCommitDate());
+				refDao.updateCommitRangesAndLastCommitDate(tempRef.getId(), index.getRanges(ref.getPath()),
+						ref.getTip(), ref.getLastCommitDate());
 				dbRefsMap.remove(ref.getPath());
 			}
 		}
@@ -85,8 +112,72 @@ public class IncrementalRepositoryExtractor {
 		LOG.info("References update process finished.");
 	}
 
-	private static void updateCommits() {
+	/*
+	 * Most of the ordinals are kept between extractions, so only the ones that
+	 * changed are written.
+	 */
+	private static void updateOrdinals(ReachabilityIndex index) {
+		Map<String, Integer> changed = new HashMap<String, Integer>(index.getOrdinals());
+		for (Document doc : new CommitDAO().findByRepository(repository.getId(),
+				Projections.include("hash", "ordinal"))) {
+			Integer ordinal = changed.get(doc.getString("hash"));
+			if (ordinal != null && ordinal.equals(doc.getInteger("ordinal"))) {
+				changed.remove(doc.getString("hash"));
+			}
+		}
+		new CommitDAO().updateOrdinals(repository.getId(), changed);
+	}
+
+	/*
+	 * Only the commits between the current tips and the tips mined last time are
+	 * extracted. If those tips are unknown or are no longer reachable, all the
+	 * commits are reconciled with the database.
+	 */
+	private static List<String> updateCommits(RepositoryMiner rm) {
 		LOG.info("Start commits extraction process.");
+		List<String> tips = scm.getTips();
+		List<String> minedTips = repository.getMinedTips();
+
+		Iterator<Commit> newCommits;
+		reconciled = minedTips == null || minedTips.isEmpty() || scm.isRewritten(minedTips);
+		if (reconciled) {
+			LOG.info("The mined tips are unknown or were rewritten, reconciling all the commits.");
+			newCommits = reconcileCommits();
+		} else {
+			newCommits = scm.iterateCommits(tips, minedTips, true);
+		}
+
+		// saves the new/modified commits, replacing the ones a failed run may
+		// have stored before the mined tips were updated
+		if (newCommits.hasNext()) {
+			new CommitDAO().createHashIndex();
+			PersistenceStage persistence = new PersistenceStage(rm.getPersistThreads(), rm.getPersistQueueSize(),
+					rm.getPersistBatchSize(), rm.getPersistBatchBytes(), true);
+			ProjectTotals totals = rm.getSCMConfig().isProjectTotals()
+					? new ProjectTotals(scm, repository.getId())
+					: null;
+			try {
+				while (newCommits.hasNext()) {
+					Commit commit = newCommits.next();
+					commit.setRepository(repository.getId());
+					if (totals != null) {
+						totals.apply(commit);
+					}
+					contributos.add(commit.getAuthor());
+					contributos.add(commit.getCommitter());
+					persistence.submit(commit);
+				}
+				persistence.finish();
+			} catch (RuntimeException e) {
+				persistence.abort();
+				throw e;
+			}
+		}
+		LOG.info("Commits extraction process finished.");
+		return tips;
+	}
+
+	private static Iterator<Commit> reconcileCommits() {
 		Set<String> commits = new HashSet<String>(scm.getCommitsNames());
 		List<String> commitsDb = new ArrayList<>();
 		
@@ -101,18 +192,11 @@ public class IncrementalRepositoryExtractor {
 				commitDao.delete(commitName, repository.getId());
 			}
 		}
-		
-		// saves the new/modified commits
-		if (commits.size() > 0) {
-			List<Document> documents = new ArrayList<>();
-			for (Commit commit : scm.getCommits(commits, true)) {
-				documents.add(commit.toDocument());
-				contributos.add(commit.getAuthor());
-				contributos.add(commit.getCommitter());
-			}
-			commitDao.insertMany(documents);
+
+		if (commits.isEmpty()) {
+			return Collections.emptyIterator();
 		}
-		LOG.info("Commits extraction process finished.");
+		return scm.iterateCommits(commits, true);
 	}
 
 }
@@ -0,0 +1,155 @@
+package org.repositoryminer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.repositoryminer.domain.Commit;
+import org.repositoryminer.persistence.BulkWriter;
+import org.repositoryminer.persistence.CommitDAO;
+
+/**
+ * Last stage of the extraction pipeline, which stores the extracted commits in
+ * background threads through unordered bulk writes. The queue between the
+ * extraction and the writers is bounded, so a slow database holds the
+ * extraction back instead of filling the memory. While the queue is full the
+ * writers are checked periodically, so a failed writer aborts the extraction
+ * instead of blocking it.
+ */
+class PersistenceStage {
+
+	private static final Commit END = new Commit();
+	private static final long CHECK_INTERVAL_MS = 500;
+
+	private BlockingQueue<Commit> queue;
+	private ExecutorService executor;
+	private List<Future<?>> writers = new ArrayList<Future<?>>();
+	private int threads;
+	private int batchSize;
+	private long batchBytes;
+	private boolean upsert;
+
+	/**
+	 * @param threads
+	 *            the number of writer threads.
+	 * @param queueSize
+	 *            the maximum number of commits waiting to be stored.
+	 * @param batchSize
+	 *            the maximum number of commits in a bulk write.
+	 * @param batchBytes
+	 *            the maximum size of a bulk write in bytes.
+	 * @param upsert
+	 *            true if a commit replaces a stored one with the same hash,
+	 *            so that commits stored by a failed run are not duplicated.
+	 */
+	PersistenceStage(int threads, int queueSize, int batchSize, long batchBytes, boolean upsert) {
+		this.threads = threads;
+		this.upsert = upsert;
+		this.batchSize = batchSize;
+		this.batchBytes = batchBytes;
+		this.queue = new ArrayBlockingQueue<Commit>(queueSize);
+		this.executor = Executors.newFixedThreadPool(threads);
+
+		for (int i = 0; i < threads; i++) {
+			writers.add(executor.submit(() -> {
+				write();
+				return null;
+			}));
+		}
+	}
+
+	/**
+	 * Enqueues a commit to be stored, blocking while the queue is full.
+	 * 
+	 * @param commit
+	 *            the commit.
+	 */
+	void submit(Commit commit) {
+		checkWriters();
+		try {
+			enqueue(commit);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			executor.shutdownNow();
+			throw new RepositoryMinerException(e);
+		}
+	}
+
+	/**
+	 * Waits until all the enqueued commits are stored.
+	 */
+	void finish() {
+		try {
+			for (int i = 0; i < threads; i++) {
+				enqueue(END);
+			}
+
+			for (Future<?> writer : writers) {
+				writer.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RepositoryMinerException(e);
+		} catch (ExecutionException e) {
+			throw new RepositoryMinerException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Stops the writers, discarding the commits not stored yet.
+	 */
+	void abort() {
+		executor.shutdownNow();
+	}
+
+	private void write() throws InterruptedException {
+		try (BulkWriter writer = new CommitDAO().newBulkWriter(batchSize, batchBytes)) {
+			Commit commit;
+			while ((commit = queue.take()) != END) {
+				if (upsert) {
+					writer.upsert(CommitDAO.byHash(commit.getRepository(), commit.getHash()), commit.toDocument());
+				} else {
+					writer.insert(commit.toDocument());
+				}
+			}
+		}
+	}
+
+	private void enqueue(Commit commit) throws InterruptedException {
+		while (!queue.offer(commit, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+			checkWriters();
+		}
+	}
+
+	/*
+	 * Fails fast if some writer died, since the queue would never be drained. A
+	 * writer only ends normally after taking an end marker.
+	 */
+	private void checkWriters() {
+		for (Future<?> writer : writers) {
+			if (writer.isDone()) {
+				try {
+					writer.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					executor.shutdownNow();
+					throw new RepositoryMinerException(e);
+				} catch (ExecutionException | CancellationException e) {
+					executor.shutdownNow();
+					throw new RepositoryMinerException("The persistence stage stopped unexpectedly.",
+							e instanceof ExecutionException ? e.getCause() : e);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+package org.repositoryminer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.repositoryminer.domain.Change;
+import org.repositoryminer.domain.Commit;
+import org.repositoryminer.persistence.CommitDAO;
+import org.repositoryminer.scm.ISCM;
+
+import com.mongodb.client.model.Projections;
+
+/**
+ * Keeps the project LOC and CYCLO at each commit while the history is walked
+ * parents first. The totals of a commit are the totals of its first parent
+ * plus the metric deltas of its changes, so no snapshot is analyzed again.
+ * Merges are mined without changes, so they are diffed against their first
+ * parent here, which mostly hits the analysis caches.
+ * <p>
+ * The size of a skipped file is unknown, so a commit with a skipped change
+ * gets no totals, and neither do the commits after it on its first parent
+ * line. Their totals would otherwise drift for the rest of the history.
+ */
+class ProjectTotals {
+
+	private ISCM scm;
+	private ObjectId repository;
+	private CommitDAO commitDao = new CommitDAO();
+	private Map<String, int[]> totals = new HashMap<String, int[]>();
+
+	/**
+	 * @param scm
+	 *            the opened SCM.
+	 * @param repository
+	 *            the repository id, used to read the totals of the commits
+	 *            stored before.
+	 */
+	ProjectTotals(ISCM scm, ObjectId repository) {
+		this.scm = scm;
+		this.repository = repository;
+	}
+
+	/**
+	 * Sets the project totals of a commit. They are left unset if the totals of
+	 * its parent are unknown or if the metrics of one of its changes were
+	 * skipped.
+	 * 
+	 * @param commit
+	 *            the commit, whose parents were already visited or stored.
+	 */
+	void apply(Commit commit) {
+		List<String> parents = commit.getParents();
+		int[] base = parents.isEmpty() ? new int[2] : getTotals(parents.get(0));
+		if (base == null) {
+			totals.put(commit.getHash(), null);
+			return;
+		}
+
+		List<Change> changes = parents.size() > 1 ? scm.getFirstParentChanges(commit.getHash())
+				: commit.getChanges();
+		int[] total = base.clone();
+		for (Change change : changes) {
+			if (change.isMetricsSkipped()) {
+				totals.put(commit.getHash(), null);
+				return;
+			}
+			total[0] += change.getLoc() - change.getLocBefore();
+			total[1] += change.getCyclo() - change.getCycloBefore();
+		}
+
+		totals.put(commit.getHash(), total);
+		commit.setProjectLoc(total[0]);
+		commit.setProjectCyclo(total[1]);
+	}
+
+	/*
+	 * Unknown totals of the visited commits are kept as null, so that they are
+	 * not read from the stored commits.
+	 */
+	private int[] getTotals(String hash) {
+		if (totals.containsKey(hash)) {
+			return totals.get(hash);
+		}
+
+		Document doc = commitDao.findByHash(hash, repository, Projections.include("project_loc", "project_cyclo"));
+		if (doc == null || doc.getInteger("project_loc") == null || doc.getInteger("project_cyclo") == null) {
+			return null;
+		}
+
+		int[] total = new int[] { doc.getInteger("project_loc"), doc.getInteger("project_cyclo") };
+		totals.put(hash, total);
+		return total;
+	}
+
+}
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -17,6 +18,7 @@ import org.repositoryminer.persistence.CommitDAO;
 import org.repositoryminer.persistence.ReferenceDAO;
 import org.repositoryminer.persistence.RepositoryDAO;
 import org.repositoryminer.scm.ISCM;
+import org.repositoryminer.scm.ReachabilityIndex;
 import org.repositoryminer.scm.SCMFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,7 +30,6 @@ import org.slf4j.LoggerFactory;
 public class RepositoryExtractor {
 
 	private static final Logger LOG = LoggerFactory.getLogger(RepositoryExtractor.class);
-	private static final int MAX_COMMITS = 1000; 
 	
 	private static ISCM scm;
 
@@ -46,7 +47,7 @@ public class RepositoryExtractor {
 		
 		File repositoryFolder = new File(rm.getPath());
 		scm = SCMFactory.getSCM(rm.getSCM());
-		scm.open(rm.getPath());
+		scm.open(rm.getPath(), rm.getSCMConfig());
 
 		Repository repository = new Repository(null, rm.getKey(), rm.getName(),
 				rm.getPath(), rm.getSCM(), rm.getDescription(),
@@ -59,9 +60,13 @@ public class RepositoryExtractor {
 		repoHandler.insert(repoDoc);
 		repository.setId(repoDoc.getObjectId("_id"));
 
-		//extractReferences(repository.getId());
+		List<String> tips = scm.getTips();
 		repoHandler.updateOnlyContributors(repository.getId(),
-				Developer.toDocumentList(extractCommits(repository.getId(), branchName)));
+				Developer.toDocumentList(extractCommits(rm, repository.getId(), branchName)));
+		// the references index the ordinals of the stored commits
+		extractReferences(repository.getId());
+		// the next incremental extraction starts from these tips
+		repoHandler.updateOnlyMinedTips(repository.getId(), tips);
 
 		scm.close();
 		LOG.info("Extraction finished.");
@@ -72,11 +77,12 @@ public class RepositoryExtractor {
 		
 		ReferenceDAO refDocumentHandler = new ReferenceDAO();
 		List<Reference> references = scm.getReferences();
+		ReachabilityIndex index = scm.getReachabilityIndex(references);
 
+		new CommitDAO().updateOrdinals(repository, index.getOrdinals());
 		for (Reference ref : references) {
-			List<String> commits = scm.getCommitsNames(ref);
 			ref.setRepository(repository);
-			ref.setCommits(commits);
+			ref.setCommitRanges(index.getRanges(ref.getPath()));
 			Document refDoc = ref.toDocument();
 			refDocumentHandler.insert(refDoc);
 		}
@@ -84,26 +90,29 @@ public class RepositoryExtractor {
 		LOG.info("References extraction process Finished.");
 	}
 
-	private static Set<Developer> extractCommits(ObjectId repository, String branchName) {
+	private static Set<Developer> extractCommits(RepositoryMiner rm, ObjectId repository, String branchName) {
 		LOG.info("Start commits extraction process.");
 		
-		CommitDAO documentHandler = new CommitDAO();
+		PersistenceStage persistence = new PersistenceStage(rm.getPersistThreads(), rm.getPersistQueueSize(),
+				rm.getPersistBatchSize(), rm.getPersistBatchBytes(), false);
 		Set<Developer> contributors = new HashSet<Developer>();
+		ProjectTotals totals = rm.getSCMConfig().isProjectTotals() ? new ProjectTotals(scm, repository) : null;
 
-		int skip = 0;
-		List<Commit> commits = scm.getCommits(skip, MAX_COMMITS, true, branchName);
-		while (commits.size() > 0) {
-			for (Commit commit : commits) {
+		try {
+			Iterator<Commit> commits = scm.iterateCommits(true, branchName);
+			while (commits.hasNext()) {
+				Commit commit = commits.next();
 				commit.setRepository(repository);
+				if (totals != null) {
+					totals.apply(commit);
+				}
 				contributors.add(commit.getCommitter());
-				documentHandler.insert(commit.toDocument());
+				persistence.submit(commit);
 			}
-			
-			skip += MAX_COMMITS;
-			// This line is to avoid lack of memory heap
-			commits = null;
-			//System.gc();
-			commits = scm.getCommits(skip, MAX_COMMITS, true, branchName);
+			persistence.finish();
+		} catch (RuntimeException e) {
+			persistence.abort();
+			throw e;
 		}
 		
 		LOG.info("Commits extraction process finished.");
@@ -4,6 +4,7 @@ import java.io.IOException;
 
 import org.repositoryminer.domain.SCMType;
 import org.repositoryminer.persistence.RepositoryDAO;
+import org.repositoryminer.scm.SCMConfig;
 
 /**
  * The front-end class to perform the repository data extraction.
@@ -15,6 +16,11 @@ public class RepositoryMiner {
 	private String name;
 	private String description;
 	private SCMType scm;
+	private SCMConfig scmConfig = new SCMConfig();
+	private int persistThreads = 1;
+	private int persistQueueSize = 64;
+	private int persistBatchSize = 500;
+	private long persistBatchBytes = 16 * 1024 * 1024;
 
 	/**
 	 * Starts the SCM data extraction process. If a repository was analyzed before,
@@ -27,7 +33,7 @@ public class RepositoryMiner {
 		if (!repoDocHandler.wasMined(key)) {
 			RepositoryExtractor.run(this, "refs/heads/master");
 		} else {
-			IncrementalRepositoryExtractor.run(key);
+			IncrementalRepositoryExtractor.run(this);
 		}
 	}
 
@@ -86,4 +92,44 @@ public class RepositoryMiner {
 		this.scm = scm;
 	}
 
+	public int getPersistThreads() {
+		return persistThreads;
+	}
+
+	public void setPersistThreads(int persistThreads) {
+		this.persistThreads = persistThreads;
+	}
+
+	public int getPersistQueueSize() {
+		return persistQueueSize;
+	}
+
+	public void setPersistQueueSize(int persistQueueSize) {
+		this.persistQueueSize = persistQueueSize;
+	}
+
+	public int getPersistBatchSize() {
+		return persistBatchSize;
+	}
+
+	public void setPersistBatchSize(int persistBatchSize) {
+		this.persistBatchSize = persistBatchSize;
+	}
+
+	public long getPersistBatchBytes() {
+		return persistBatchBytes;
+	}
+
+	public void setPersistBatchBytes(long persistBatchBytes) {
+		this.persistBatchBytes = persistBatchBytes;
+	}
+
+	public SCMConfig getSCMConfig() {
+		return scmConfig;
+	}
+
+	public void setSCMConfig(SCMConfig scmConfig) {
+		this.scmConfig = scmConfig;
+	}
+
 }
@@ -0,0 +1,124 @@
+package org.repositoryminer.analysis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Bounded in-memory cache of analysis results, keyed by the id of the analyzed
+ * blob. Since a blob id identifies a file content, a file version is analyzed
+ * only once while it remains cached. The reasons why blobs could not be
+ * analyzed are kept as well, so a file version skipped for its content is not
+ * analyzed again.
+ * The least recently used entries are evicted first.
+ */
+public class AnalysisCache {
+
+	private Map<ObjectId, AnalysisResult> entries;
+	private Map<ObjectId, String> skipReasons;
+	private long hits;
+	private long misses;
+
+	/**
+	 * @param maxSize
+	 *            the maximum number of cached results, zero disables the cache.
+	 */
+	public AnalysisCache(final int maxSize) {
+		entries = new LinkedHashMap<ObjectId, AnalysisResult>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ObjectId, AnalysisResult> eldest) {
+				return size() > maxSize;
+			}
+
+		};
+		skipReasons = new LinkedHashMap<ObjectId, String>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ObjectId, String> eldest) {
+				return size() > maxSize;
+			}
+
+		};
+	}
+
+	/**
+	 * Retrieves the cached result of a blob.
+	 * 
+	 * @param blobId
+	 *            the blob id.
+	 * @return the cached result or null.
+	 */
+	public synchronized AnalysisResult get(ObjectId blobId) {
+		AnalysisResult result = entries.get(blobId);
+		if (result != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return result;
+	}
+
+	/**
+	 * Caches the result of a blob.
+	 * 
+	 * @param blobId
+	 *            the blob id.
+	 * @param result
+	 *            the analysis result.
+	 */
+	public synchronized void put(ObjectId blobId, AnalysisResult result) {
+		entries.put(blobId, result);
+	}
+
+	/**
+	 * Retrieves why a blob could not be analyzed.
+	 * 
+	 * @param blobId
+	 *            the blob id.
+	 * @return the cached reason or null.
+	 */
+	public synchronized String getSkipReason(ObjectId blobId) {
+		return skipReasons.get(blobId);
+	}
+
+	/**
+	 * Caches why a blob could not be analyzed. Only the reasons given by the
+	 * content of the blob may be cached, not those depending on the load.
+	 * 
+	 * @param blobId
+	 *            the blob id.
+	 * @param reason
+	 *            why the blob was skipped.
+	 */
+	public synchronized void putSkipReason(ObjectId blobId, String reason) {
+		skipReasons.put(blobId, reason);
+	}
+
+	/**
+	 * @return the number of cached results.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of lookups answered by the cache.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups not answered by the cache.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+}
@@ -0,0 +1,57 @@
+package org.repositoryminer.analysis;
+
+import java.util.List;
+
+import org.bson.Document;
+import org.repositoryminer.domain.Package;
+
+/**
+ * Holds the metrics measured in one version of a source file.
+ */
+public class AnalysisResult {
+
+	private List<Package> packages;
+	private int loc;
+	private int cyclo;
+
+	public AnalysisResult(List<Package> packages, int loc, int cyclo) {
+		this.packages = packages;
+		this.loc = loc;
+		this.cyclo = cyclo;
+	}
+
+	/**
+	 * Converts a document to an analysis result.
+	 * 
+	 * @param document
+	 * 
+	 * @return an analysis result.
+	 */
+	@SuppressWarnings("unchecked")
+	public static AnalysisResult parseDocument(Document document) {
+		return new AnalysisResult(Package.parseDocuments(document.get("packages", List.class)),
+				document.getInteger("loc", 0), document.getInteger("cyclo", 0));
+	}
+
+	/**
+	 * Converts the analysis result to a document.
+	 * 
+	 * @return a document.
+	 */
+	public Document toDocument() {
+		return new Document("loc", loc).append("cyclo", cyclo).append("packages", Package.toDocumentList(packages));
+	}
+
+	public List<Package> getPackages() {
+		return packages;
+	}
+
+	public int getLoc() {
+		return loc;
+	}
+
+	public int getCyclo() {
+		return cyclo;
+	}
+
+}
@@ -0,0 +1,198 @@
+package org.repositoryminer.analysis;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import gastmappers.Language;
+
+/**
+ * Selects the analyzer of a source file by its extension. Each language keeps
+ * a pool of analyzers, so that their mappers are built once and reused by the
+ * next files, and a limit of files analyzed at the same time. Files of
+ * different languages are analyzed independently, so that a repository mixing
+ * them is measured in a single pass.
+ */
+public class AnalyzerRegistry {
+
+	private class Pool {
+
+		private Language language;
+		private Semaphore permits;
+		private Queue<IAnalyzer> idle = new ConcurrentLinkedQueue<IAnalyzer>();
+
+		private Pool(Language language, int maxConcurrency) {
+			this.language = language;
+			this.permits = new Semaphore(maxConcurrency);
+		}
+
+		/*
+		 * The permit is released by the thread running the analyzer once the task
+		 * is over, so an analysis abandoned after its timeout still counts until
+		 * it ends, and a task cancelled before it started releases it as well.
+		 */
+		private AnalysisResult analyze(String sourceCode, long timeout) throws Exception {
+			permits.acquire();
+			FutureTask<AnalysisResult> task = new FutureTask<AnalysisResult>(() -> run(sourceCode));
+			Runnable runner = () -> {
+				try {
+					task.run();
+				} finally {
+					permits.release();
+				}
+			};
+
+			if (timeout <= 0) {
+				runner.run();
+				return getResult(task);
+			}
+
+			Thread thread = new Thread(runner, "analysis-" + language);
+			thread.setDaemon(true);
+			thread.start();
+			try {
+				task.get(timeout, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				task.cancel(true);
+				throw e;
+			} catch (ExecutionException e) {
+				// rethrown below
+			}
+			return getResult(task);
+		}
+
+		/*
+		 * The analyzer is pooled again only if its analysis ended normally and was
+		 * not abandoned, since the state of an analyzer left by a failure, a
+		 * timeout or an interruption is unknown.
+		 */
+		private AnalysisResult run(String sourceCode) throws Exception {
+			IAnalyzer analyzer = idle.poll();
+			if (analyzer == null) {
+				analyzer = type.newAnalyzer(language, spans);
+			}
+			AnalysisResult result = analyzer.analyze(sourceCode);
+			if (!Thread.currentThread().isInterrupted()) {
+				idle.add(analyzer);
+			}
+			return result;
+		}
+
+	}
+
+	private AnalyzerType type;
+	private boolean spans;
+	private Map<String, Language> languages = new HashMap<String, Language>();
+	private Map<Language, Pool> pools = new HashMap<Language, Pool>();
+
+	/**
+	 * @param type
+	 *            the type of the analyzers of every language.
+	 */
+	public AnalyzerRegistry(AnalyzerType type) {
+		this(type, false);
+	}
+
+	/**
+	 * @param type
+	 *            the type of the analyzers of every language.
+	 * @param spans
+	 *            true if the analyzers must find the lines of each method.
+	 */
+	public AnalyzerRegistry(AnalyzerType type, boolean spans) {
+		this.type = type;
+		this.spans = spans;
+	}
+
+	/**
+	 * Registers the files of an extension. Extensions of the same language share
+	 * its pool and its limit, which is the one given first.
+	 *
+	 * @param extension
+	 *            the file extension, without the dot.
+	 * @param language
+	 *            the language of the files.
+	 * @param maxConcurrency
+	 *            the maximum number of files of the language analyzed at the
+	 *            same time.
+	 */
+	public void register(String extension, Language language, int maxConcurrency) {
+		languages.put(extension.toLowerCase(), language);
+		if (!pools.containsKey(language)) {
+			pools.put(language, new Pool(language, maxConcurrency));
+		}
+	}
+
+	/**
+	 * @param path
+	 *            the file path.
+	 * @return the language of the file, or null if no analyzer handles it.
+	 */
+	public Language getLanguage(String path) {
+		int i = path.lastIndexOf('.');
+		if (i < 0 || i < path.lastIndexOf('/')) {
+			return null;
+		}
+		return languages.get(path.substring(i + 1).toLowerCase());
+	}
+
+	/**
+	 * Analyzes a source file with an analyzer of its language, waiting while the
+	 * language is at its limit.
+	 *
+	 * @param language
+	 *            the language of the file.
+	 * @param sourceCode
+	 *            the file content.
+	 * @return the metrics of the file.
+	 * @throws Exception
+	 *             if the file can not be analyzed.
+	 */
+	public AnalysisResult analyze(Language language, String sourceCode) throws Exception {
+		return analyze(language, sourceCode, 0);
+	}
+
+	/**
+	 * Analyzes a source file under a time limit. The analysis runs in its own
+	 * thread, which is interrupted and abandoned when the time is over, so that
+	 * an analyzer ignoring interruptions holds only that thread. The time waiting
+	 * for the language limit is not counted.
+	 *
+	 * @param language
+	 *            the language of the file.
+	 * @param sourceCode
+	 *            the file content.
+	 * @param timeout
+	 *            the milliseconds given to the analysis, zero means no limit.
+	 * @return the metrics of the file.
+	 * @throws TimeoutException
+	 *             if the analysis is not over in time.
+	 * @throws Exception
+	 *             if the file can not be analyzed.
+	 */
+	public AnalysisResult analyze(Language language, String sourceCode, long timeout) throws Exception {
+		Pool pool = pools.get(language);
+		if (pool == null) {
+			throw new IllegalArgumentException("No analyzer is registered for " + language + ".");
+		}
+		return pool.analyze(sourceCode, timeout);
+	}
+
+	private static AnalysisResult getResult(FutureTask<AnalysisResult> task) throws Exception {
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+}
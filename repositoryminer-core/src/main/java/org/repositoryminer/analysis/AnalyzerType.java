@@ -0,0 +1,69 @@
+package org.repositoryminer.analysis;
+
+import gastmappers.Language;
+
+/**
+ * The analyzers available to measure the source files.
+ */
+public enum AnalyzerType {
+
+	/**
+	 * Maps the files to a GAST and runs the metrics library over it.
+	 */
+	GAST(GastAnalyzer.VERSION),
+
+	/**
+	 * Scans the tokens of the files, much faster but approximate.
+	 */
+	LEXER(LexerAnalyzer.VERSION);
+
+	private String version;
+
+	private AnalyzerType(String version) {
+		this.version = version;
+	}
+
+	/**
+	 * @return identifies the results of this analyzer in persisted caches.
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * @param spans
+	 *            true if the results hold the lines of each method.
+	 * @return identifies the results of this analyzer in persisted caches, which
+	 *         differ when only the GAST analyzer is asked for the spans.
+	 */
+	public String getVersion(boolean spans) {
+		return spans && this == GAST ? version + "-spans" : version;
+	}
+
+	/**
+	 * @param language
+	 *            the analyzed language.
+	 * @return a new analyzer of this type, which may not find the lines of each
+	 *         method.
+	 */
+	public IAnalyzer newAnalyzer(Language language) {
+		return newAnalyzer(language, false);
+	}
+
+	/**
+	 * @param language
+	 *            the analyzed language.
+	 * @param spans
+	 *            true if the analyzer must find the lines of each method.
+	 * @return a new analyzer of this type.
+	 */
+	public IAnalyzer newAnalyzer(Language language, boolean spans) {
+		switch (this) {
+		case LEXER:
+			return new LexerAnalyzer();
+		default:
+			return new GastAnalyzer(language, spans);
+		}
+	}
+
+}
@@ -0,0 +1,273 @@
+package org.repositoryminer.analysis;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.JSONArray;
+import org.repositoryminer.domain.Class;
+import org.repositoryminer.domain.Method;
+import org.repositoryminer.domain.Package;
+
+import ASTMCore.ASTMSource.CompilationUnit;
+import gastmappers.Language;
+import gastmappers.Mapper;
+import gastmappers.MapperFactory;
+import gastmappers.exceptions.UnsupportedLanguageException;
+import metrics.AbstractInput;
+import metrics.AbstractMetric;
+import metrics.MetricEnum;
+import metrics.MetricFactory;
+import metrics.Output;
+import metrics.examcompletemetric.MetricClass;
+import metrics.examcompletemetric.MetricMethod;
+import metrics.examcompletemetric.MetricPackage;
+import metrics.exceptions.UnsupportedMetricException;
+
+/**
+ * Analyzes source code by mapping it to a GAST and running the requested
+ * metrics over it. The code is parsed once, and the output of every metric is
+ * written into a single package, class and method tree, each metric filling
+ * its own value. The metrics library still visits the GAST once per metric,
+ * since each metric drives its own traversal.
+ * <p>
+ * The GAST holds no line numbers, so when the spans of the methods are asked
+ * for they come from a lexer pass over the same file, which adds a full scan
+ * of the tokens to every analysis.
+ * <p>
+ * An instance reuses its mapper and metric factory between files, so it must
+ * not be shared between threads.
+ */
+public class GastAnalyzer implements IAnalyzer {
+
+	/**
+	 * Identifies the produced metrics in persisted results. It must change
+	 * whenever the produced metrics change.
+	 */
+	public static final String VERSION = "gast-2";
+
+	private Language language;
+	private List<MetricEnum> metrics;
+	private boolean spans;
+	private Mapper mapper;
+	private MetricFactory metricFactory = new MetricFactory();
+
+	/**
+	 * Creates an analyzer which measures LOC and CYCLO.
+	 *
+	 * @param language
+	 *            the analyzed language.
+	 */
+	public GastAnalyzer(Language language) {
+		this(language, false);
+	}
+
+	/**
+	 * Creates an analyzer which measures LOC and CYCLO.
+	 *
+	 * @param language
+	 *            the analyzed language.
+	 * @param spans
+	 *            true if the lines of each method are found as well.
+	 */
+	public GastAnalyzer(Language language, boolean spans) {
+		this(language, Arrays.asList(MetricEnum.LOC, MetricEnum.CYCLO));
+		this.spans = spans;
+	}
+
+	/**
+	 * @param language
+	 *            the analyzed language.
+	 * @param metrics
+	 *            the metrics computed for every file.
+	 */
+	public GastAnalyzer(Language language, List<MetricEnum> metrics) {
+		this.language = language;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Analyzes a source file.
+	 *
+	 * @param sourceCode
+	 *            the file content.
+	 * @return the merged metrics of the file.
+	 */
+	@Override
+	public AnalysisResult analyze(String sourceCode) throws UnsupportedMetricException, IOException,
+			UnsupportedLanguageException, SQLException, ClassNotFoundException, InterruptedException {
+		OutputMapperObject fileCU = readFromSpecificLanguage(sourceCode);
+
+		ArrayList<ArrayList<ArrayList<String>>> pathsJSON = new ArrayList<ArrayList<ArrayList<String>>>();
+		ArrayList<ArrayList<ArrayList<CompilationUnit>>> gastObjects = new ArrayList<ArrayList<ArrayList<CompilationUnit>>>();
+
+		ArrayList<ArrayList<String>> jsonAux = new ArrayList<ArrayList<String>>();
+		ArrayList<ArrayList<CompilationUnit>> gastAux = new ArrayList<ArrayList<CompilationUnit>>();
+		jsonAux.add(fileCU.gastAsJson);
+		gastAux.add(fileCU.gastAsObject);
+
+		pathsJSON.add(jsonAux);
+		gastObjects.add(gastAux);
+
+		// Every metric visits the same GAST on its own, since each AbstractMetric
+		// drives its own traversal, and its output is written straight into a
+		// single tree, keyed by package, class and method.
+		List<Package> packages = new ArrayList<Package>();
+		Map<String, Package> packageIndex = new HashMap<String, Package>();
+		Map<String, Class> classIndex = new HashMap<String, Class>();
+		Map<String, Method> methodIndex = new HashMap<String, Method>();
+		for (MetricEnum metric : metrics) {
+			for (MetricPackage metricPackage : nonNull(getMetricResult(metric, pathsJSON, gastObjects))) {
+				String packageName = metricPackage.getPackageName();
+				Package p = packageIndex.get(packageName);
+				if (p == null) {
+					p = new Package(packageName, new ArrayList<Class>());
+					packageIndex.put(packageName, p);
+					packages.add(p);
+				}
+
+				for (MetricClass metricClass : nonNull(metricPackage.getPackageClasses())) {
+					String classKey = packageName + '/' + metricClass.getClassName();
+					Class c = classIndex.get(classKey);
+					if (c == null) {
+						c = new Class(metricClass.getClassName(), new ArrayList<Method>());
+						classIndex.put(classKey, c);
+						p.getClasses().add(c);
+					}
+
+					Map<String, Integer> overloads = new HashMap<String, Integer>();
+					for (MetricMethod metricMethod : nonNull(metricClass.getMethods())) {
+						String methodKey = methodKey(classKey, metricMethod.getMethodName(), overloads);
+						Method m = methodIndex.get(methodKey);
+						if (m == null) {
+							m = new Method(metricMethod.getMethodName(), 0, 0);
+							methodIndex.put(methodKey, m);
+							c.getMethods().add(m);
+						}
+
+						// each metric only fills its own value
+						if (metric == MetricEnum.LOC) {
+							m.setLoc(metricMethod.getLOC());
+						} else if (metric == MetricEnum.CYCLO) {
+							m.setComplexity(metricMethod.getCYCLO());
+						}
+					}
+				}
+			}
+		}
+
+		if (spans) {
+			copySpans(packages, new LexerAnalyzer().analyze(sourceCode).getPackages());
+		}
+
+		int loc = 0, cyclo = 0;
+		for (Package p : packages) {
+			for (Class c : nonNull(p.getClasses())) {
+				for (Method m : nonNull(c.getMethods())) {
+					loc += m.getLoc();
+					cyclo += m.getComplexity();
+				}
+			}
+		}
+
+		return new AnalysisResult(packages, loc, cyclo);
+	}
+
+	/*
+	 * The GAST carries no line numbers, so the spans of the methods are taken
+	 * from a lexer pass over the same file. Methods are matched by class, name
+	 * and position among their overloads, since both analyzers may name the
+	 * packages differently. Unmatched methods keep an unknown span.
+	 */
+	private void copySpans(List<Package> packages, List<Package> spans) {
+		Map<String, Method> methods = new HashMap<String, Method>();
+		for (Package p : spans) {
+			for (Class c : p.getClasses()) {
+				Map<String, Integer> overloads = new HashMap<String, Integer>();
+				for (Method m : c.getMethods()) {
+					methods.put(methodKey(c.getName(), m, overloads), m);
+				}
+			}
+		}
+
+		for (Package p : packages) {
+			for (Class c : nonNull(p.getClasses())) {
+				Map<String, Integer> overloads = new HashMap<String, Integer>();
+				for (Method m : nonNull(c.getMethods())) {
+					Method span = methods.get(methodKey(c.getName(), m, overloads));
+					if (span != null) {
+						m.setStartLine(span.getStartLine());
+						m.setEndLine(span.getEndLine());
+					}
+				}
+			}
+		}
+	}
+
+	private static String methodKey(String classKey, Method method, Map<String, Integer> overloads) {
+		return methodKey(classKey, method.getName(), overloads);
+	}
+
+	/*
+	 * The metrics library reports a method by its name only, so overloads are
+	 * told apart by their position among the methods with the same name. The
+	 * keys only pair the trees of one version of a file, which list the methods
+	 * in the same order, and are never compared between versions.
+	 */
+	private static String methodKey(String classKey, String methodName, Map<String, Integer> overloads) {
+		Integer occurrence = overloads.merge(methodName, 1, Integer::sum);
+		return classKey + '/' + methodName + '#' + occurrence;
+	}
+
+	private static <E> List<E> nonNull(List<E> list) {
+		return list != null ? list : new ArrayList<E>();
+	}
+
+	private ArrayList<MetricPackage> getMetricResult(MetricEnum metric,
+			ArrayList<ArrayList<ArrayList<String>>> pathsJSON,
+			ArrayList<ArrayList<ArrayList<CompilationUnit>>> gastObjects)
+			throws UnsupportedMetricException, SQLException, ClassNotFoundException {
+		// Get the Metric from the Factory.
+		AbstractMetric specificMetric = metricFactory.createMetric(metric);
+		// Each mapper knows how to process the inputParameters
+		JSONArray inputParameters = new JSONArray();
+		AbstractInput input = specificMetric.createSpecificInput(inputParameters);
+
+		input.gastJsonInputs = pathsJSON;
+		input.gastObjects = gastObjects;
+		input.language = language;
+
+		specificMetric.start(input);
+		Output output = specificMetric.exportOutput();
+		// Get the output as a file.
+		return output.getMetricResult();
+	}
+
+	private OutputMapperObject readFromSpecificLanguage(String sourceCode)
+			throws UnsupportedLanguageException, IOException {
+		// Build the mapper once, it is reused for the next files.
+		if (mapper == null) {
+			mapper = new MapperFactory().createMapper(language);
+		}
+
+		// Return the GAST from a file content.
+		ArrayList<CompilationUnit> compilationUnits = mapper.getGastCompilationUnitInMemory(sourceCode);
+
+		// The JSON representation is only built if some metric reads it.
+		OutputMapperObject newOutput = new OutputMapperObject();
+		newOutput.gastAsObject = compilationUnits;
+		newOutput.gastAsJson = new LazyGastJson(compilationUnits);
+		return newOutput;
+	}
+
+}
+
+class OutputMapperObject {
+	public ArrayList<String> gastAsJson;
+	public ArrayList<CompilationUnit> gastAsObject;
+
+}
@@ -0,0 +1,21 @@
+package org.repositoryminer.analysis;
+
+/**
+ * Interface that define what is needed to measure a source file.
+ * Implementations may keep state between files, so an instance must not be
+ * shared between threads.
+ */
+public interface IAnalyzer {
+
+	/**
+	 * Analyzes a source file.
+	 * 
+	 * @param sourceCode
+	 *            the file content.
+	 * @return the metrics of the file, by package, class and method.
+	 * @throws Exception
+	 *             if the file can not be analyzed.
+	 */
+	public AnalysisResult analyze(String sourceCode) throws Exception;
+
+}
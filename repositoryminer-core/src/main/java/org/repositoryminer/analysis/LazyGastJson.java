@@ -0,0 +1,228 @@
+package org.repositoryminer.analysis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import com.google.gson.Gson;
+
+import ASTMCore.ASTMSource.CompilationUnit;
+
+/**
+ * JSON representation of the compilation units of a file, which is only
+ * produced when some metric reads it. Metrics working over the GAST objects
+ * never pay for the serialization.
+ */
+class LazyGastJson extends ArrayList<String> {
+
+	private static final long serialVersionUID = 1L;
+	private static final Gson GSON = new Gson();
+
+	private transient List<CompilationUnit> compilationUnits;
+
+	LazyGastJson(List<CompilationUnit> compilationUnits) {
+		super(0);
+		this.compilationUnits = compilationUnits;
+	}
+
+	private void materialize() {
+		if (compilationUnits == null) {
+			return;
+		}
+
+		List<CompilationUnit> units = compilationUnits;
+		compilationUnits = null;
+
+		ensureCapacity(units.size());
+		for (CompilationUnit compilationUnit : units) {
+			// Remove the "null"'s values into a empty string.
+			super.add(GSON.toJson(compilationUnit).replace("null", ""));
+		}
+	}
+
+	@Override
+	public int size() {
+		return compilationUnits != null ? compilationUnits.size() : super.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public String get(int index) {
+		materialize();
+		return super.get(index);
+	}
+
+	@Override
+	public String set(int index, String element) {
+		materialize();
+		return super.set(index, element);
+	}
+
+	@Override
+	public boolean add(String e) {
+		materialize();
+		return super.add(e);
+	}
+
+	@Override
+	public void add(int index, String element) {
+		materialize();
+		super.add(index, element);
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends String> c) {
+		materialize();
+		return super.addAll(c);
+	}
+
+	@Override
+	public boolean addAll(int index, Collection<? extends String> c) {
+		materialize();
+		return super.addAll(index, c);
+	}
+
+	@Override
+	public String remove(int index) {
+		materialize();
+		return super.remove(index);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		materialize();
+		return super.remove(o);
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		materialize();
+		return super.removeAll(c);
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		materialize();
+		return super.retainAll(c);
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super String> filter) {
+		materialize();
+		return super.removeIf(filter);
+	}
+
+	@Override
+	public void replaceAll(UnaryOperator<String> operator) {
+		materialize();
+		super.replaceAll(operator);
+	}
+
+	@Override
+	public void sort(Comparator<? super String> c) {
+		materialize();
+		super.sort(c);
+	}
+
+	@Override
+	public void clear() {
+		compilationUnits = null;
+		super.clear();
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		materialize();
+		return super.contains(o);
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		materialize();
+		return super.indexOf(o);
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		materialize();
+		return super.lastIndexOf(o);
+	}
+
+	@Override
+	public Object[] toArray() {
+		materialize();
+		return super.toArray();
+	}
+
+	@Override
+	public <T> T[] toArray(T[] a) {
+		materialize();
+		return super.toArray(a);
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		materialize();
+		return super.iterator();
+	}
+
+	@Override
+	public ListIterator<String> listIterator() {
+		materialize();
+		return super.listIterator();
+	}
+
+	@Override
+	public ListIterator<String> listIterator(int index) {
+		materialize();
+		return super.listIterator(index);
+	}
+
+	@Override
+	public List<String> subList(int fromIndex, int toIndex) {
+		materialize();
+		return super.subList(fromIndex, toIndex);
+	}
+
+	@Override
+	public void forEach(Consumer<? super String> action) {
+		materialize();
+		super.forEach(action);
+	}
+
+	@Override
+	public Spliterator<String> spliterator() {
+		materialize();
+		return super.spliterator();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		materialize();
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		materialize();
+		return super.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		materialize();
+		return super.toString();
+	}
+
+}
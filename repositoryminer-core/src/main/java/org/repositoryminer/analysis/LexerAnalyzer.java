@@ -0,0 +1,475 @@
+package org.repositoryminer.analysis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.repositoryminer.domain.Class;
+import org.repositoryminer.domain.Method;
+import org.repositoryminer.domain.Package;
+
+/**
+ * Measures the methods of a source file by scanning its tokens once, without
+ * building a syntax tree. It follows the braces of the syntax shared by Java
+ * and C#: packages and namespaces, type declarations and the methods declared
+ * directly in them.
+ * <p>
+ * The span of a method goes from the line of its name to the line of its
+ * closing brace, and its LOC are the lines of the span holding code. Its CYCLO
+ * is one plus the if, for, foreach, while, case and catch keywords, the
+ * {@code &&} and {@code ||} operators and the conditional operators found in
+ * its body. The results are an approximation of the GAST metrics, meant for
+ * scans of long histories.
+ */
+public class LexerAnalyzer implements IAnalyzer {
+
+	/**
+	 * Identifies the produced metrics in persisted results. It must change
+	 * whenever the produced metrics change.
+	 */
+	public static final String VERSION = "lexer-3";
+
+	private static final Set<String> TYPE_KEYWORDS = new HashSet<String>(
+			Arrays.asList("class", "interface", "enum", "record", "struct"));
+	private static final Set<String> DECISION_KEYWORDS = new HashSet<String>(
+			Arrays.asList("if", "for", "foreach", "while", "case", "catch"));
+	private static final Set<String> NOT_METHODS = new HashSet<String>(Arrays.asList("if", "for", "foreach",
+			"while", "switch", "catch", "synchronized", "return", "new", "throw", "using", "lock", "fixed", "typeof",
+			"sizeof", "nameof", "default", "base", "this", "super", "checked", "unchecked", "when", "yield"));
+
+	/**
+	 * Analyzes a source file. The analysis stops if its thread is interrupted.
+	 *
+	 * @param sourceCode
+	 *            the file content.
+	 * @return the metrics of the file.
+	 * @throws InterruptedException
+	 *             if the thread is interrupted.
+	 */
+	@Override
+	public AnalysisResult analyze(String sourceCode) throws InterruptedException {
+		Lexer lexer = new Lexer(sourceCode);
+		Parser parser = new Parser();
+		int tokens = 0;
+		for (Token token = lexer.next(); token != null; token = lexer.next()) {
+			if (++tokens % 4096 == 0 && Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			parser.accept(token);
+		}
+		return parser.getResult();
+	}
+
+	private static final int IDENTIFIER = 0;
+	private static final int LITERAL = 1;
+	private static final int SYMBOL = 2;
+
+	private static class Token {
+
+		private String text;
+		private int kind;
+		private int line;
+		private int endLine;
+		// for '?', whether it can not be a wildcard or a nullable type
+		private boolean conditional;
+
+		private Token(String text, int kind, int line, int endLine) {
+			this.text = text;
+			this.kind = kind;
+			this.line = line;
+			this.endLine = endLine;
+		}
+
+		private boolean is(String text) {
+			return this.text.equals(text);
+		}
+
+	}
+
+	/*
+	 * Splits the source in identifiers, literals and symbols, skipping blanks and
+	 * comments. Literal contents are never kept.
+	 */
+	private static class Lexer {
+
+		private String src;
+		private int pos = 0;
+		private int line = 1;
+
+		private Lexer(String src) {
+			this.src = src;
+		}
+
+		private char peek(int offset) {
+			int i = pos + offset;
+			return i < src.length() ? src.charAt(i) : '\0';
+		}
+
+		private Token next() {
+			while (pos < src.length()) {
+				char c = src.charAt(pos);
+				if (c == '\n') {
+					line++;
+					pos++;
+				} else if (Character.isWhitespace(c)) {
+					pos++;
+				} else if (c == '/' && peek(1) == '/') {
+					while (pos < src.length() && src.charAt(pos) != '\n') {
+						pos++;
+					}
+				} else if (c == '/' && peek(1) == '*') {
+					pos += 2;
+					while (pos < src.length() && !(src.charAt(pos) == '*' && peek(1) == '/')) {
+						skipChar();
+					}
+					pos += 2;
+				} else {
+					return readToken(c);
+				}
+			}
+			return null;
+		}
+
+		private Token readToken(char c) {
+			int start = pos;
+			int startLine = line;
+
+			if (c == '"' || c == '\'' || ((c == '@' || c == '$') && isStringPrefix())) {
+				boolean verbatim = false;
+				while (src.charAt(pos) == '@' || src.charAt(pos) == '$') {
+					verbatim |= src.charAt(pos) == '@';
+					pos++;
+				}
+				if (src.startsWith("\"\"\"", pos)) {
+					skipTextBlock();
+				} else {
+					skipQuoted(src.charAt(pos), verbatim);
+				}
+				return new Token("\"", LITERAL, startLine, line);
+			}
+
+			if (Character.isJavaIdentifierStart(c)) {
+				while (pos < src.length() && Character.isJavaIdentifierPart(src.charAt(pos))) {
+					pos++;
+				}
+				return new Token(src.substring(start, pos), IDENTIFIER, startLine, line);
+			}
+
+			if (Character.isDigit(c)) {
+				while (pos < src.length()
+						&& (Character.isLetterOrDigit(src.charAt(pos)) || src.charAt(pos) == '.')) {
+					pos++;
+				}
+				return new Token("0", LITERAL, startLine, line);
+			}
+
+			String pair = src.substring(pos, Math.min(pos + 2, src.length()));
+			if (pair.equals("&&") || pair.equals("||") || pair.equals("?.") || pair.equals("??")) {
+				pos += 2;
+				return new Token(pair, SYMBOL, startLine, line);
+			}
+
+			pos++;
+			Token token = new Token(String.valueOf(c), SYMBOL, startLine, line);
+			if (c == '?') {
+				// a nullable type is written "int? x", a wildcard "<?>" or "<? extends T>"
+				char before = start > 0 ? src.charAt(start - 1) : ' ';
+				boolean nullable = (Character.isJavaIdentifierPart(before) || before == '>' || before == ']')
+						&& Character.isWhitespace(peek(0));
+				int i = pos;
+				while (i < src.length() && Character.isWhitespace(src.charAt(i))) {
+					i++;
+				}
+				token.conditional = !nullable && i < src.length() && ">,)]".indexOf(src.charAt(i)) < 0;
+			}
+			return token;
+		}
+
+		private boolean isStringPrefix() {
+			int i = pos;
+			while (i < src.length() && (src.charAt(i) == '@' || src.charAt(i) == '$')) {
+				i++;
+			}
+			return i < src.length() && src.charAt(i) == '"';
+		}
+
+		private void skipChar() {
+			if (src.charAt(pos) == '\n') {
+				line++;
+			}
+			pos++;
+		}
+
+		private void skipQuoted(char quote, boolean verbatim) {
+			pos++;
+			while (pos < src.length()) {
+				char c = src.charAt(pos);
+				if (verbatim && c == quote) {
+					// a doubled quote is an escaped quote
+					pos++;
+					if (pos < src.length() && src.charAt(pos) == quote) {
+						pos++;
+						continue;
+					}
+					return;
+				} else if (c == quote) {
+					pos++;
+					return;
+				} else if (c == '\\' && !verbatim) {
+					pos = Math.min(pos + 2, src.length());
+				} else if (c == '\n' && !verbatim) {
+					// an unterminated literal ends at the line end
+					return;
+				} else {
+					skipChar();
+				}
+			}
+		}
+
+		private void skipTextBlock() {
+			pos += 3;
+			while (pos < src.length() && !src.startsWith("\"\"\"", pos)) {
+				if (src.charAt(pos) == '\\') {
+					pos++;
+					if (pos >= src.length()) {
+						break;
+					}
+				}
+				skipChar();
+			}
+			pos += 3;
+		}
+
+	}
+
+	private static final int NAMESPACE = 0;
+	private static final int TYPE = 1;
+	private static final int METHOD = 2;
+	private static final int BLOCK = 3;
+
+	private static class Frame {
+
+		private int kind;
+		private Class type;
+		private Method method;
+		private int lastLine;
+		private String previousPackage;
+
+		private Frame(int kind) {
+			this.kind = kind;
+		}
+
+	}
+
+	/*
+	 * Follows the declarations through the braces, measuring the methods as
+	 * their tokens arrive.
+	 */
+	private static class Parser {
+
+		private Deque<Frame> frames = new ArrayDeque<Frame>();
+		private Map<String, Package> packages = new LinkedHashMap<String, Package>();
+		private String packageName = "";
+		// the tokens of the declaration being read, outside methods
+		private List<Token> statement = new ArrayList<Token>();
+		private Token previous;
+		private String typeKeyword;
+		private String recordName;
+		private String pendingType;
+
+		private void accept(Token token) {
+			Frame method = null;
+			for (Frame frame : frames) {
+				if (frame.kind == METHOD) {
+					addLines(frame, token);
+					if (method == null) {
+						method = frame;
+					}
+				}
+			}
+			if (method != null && isDecision(token)) {
+				method.method.setComplexity(method.method.getComplexity() + 1);
+			}
+
+			// record is only a contextual keyword, so it declares a type when
+			// followed by a name and then a parameter list, type parameters, a
+			// body or a base list
+			if (recordName != null) {
+				if (token.is("(") || token.is("<") || token.is("{") || token.is(":") || token.is("implements")) {
+					pendingType = recordName;
+				}
+				recordName = null;
+			}
+			if (typeKeyword != null && token.kind == IDENTIFIER) {
+				if (typeKeyword.equals("record")) {
+					recordName = token.text;
+				} else {
+					pendingType = token.text;
+				}
+			}
+			// types are declared out of method bodies, and a type keyword is neither
+			// in a class literal nor in a generic constraint
+			typeKeyword = isDeclarationLevel() && token.kind == IDENTIFIER && TYPE_KEYWORDS.contains(token.text)
+					&& (previous == null || (!previous.is(".") && !previous.is(":"))) ? token.text : null;
+
+			if (token.is("{")) {
+				open(token);
+			} else if (token.is("}")) {
+				close(token);
+			} else if (token.is(";")) {
+				endStatement();
+			} else if (isDeclarationLevel()) {
+				statement.add(token);
+			}
+
+			previous = token;
+		}
+
+		private boolean isDeclarationLevel() {
+			return frames.isEmpty() || frames.peek().kind == NAMESPACE || frames.peek().kind == TYPE;
+		}
+
+		private boolean isDecision(Token token) {
+			if (token.kind == IDENTIFIER) {
+				return DECISION_KEYWORDS.contains(token.text) && (previous == null || !previous.is("."));
+			}
+			if (token.is("&&") || token.is("||")) {
+				return true;
+			}
+			return token.is("?") && token.conditional && previous != null && !previous.is("<")
+					&& !previous.is(",");
+		}
+
+		private void addLines(Frame frame, Token token) {
+			int from = Math.max(frame.lastLine + 1, token.line);
+			if (token.endLine >= from) {
+				frame.method.setLoc(frame.method.getLoc() + token.endLine - from + 1);
+				frame.lastLine = token.endLine;
+			}
+		}
+
+		private void open(Token brace) {
+			Frame top = frames.peek();
+			Frame frame;
+			int nameIndex;
+
+			if (pendingType != null) {
+				frame = new Frame(TYPE);
+				frame.type = new Class(pendingType, new ArrayList<Method>());
+				getPackage().getClasses().add(frame.type);
+			} else if (!statement.isEmpty() && statement.get(0).is("namespace")) {
+				frame = new Frame(NAMESPACE);
+				frame.previousPackage = packageName;
+				packageName = qualifiedName(packageName);
+			} else if (top != null && top.kind == TYPE && (nameIndex = findMethodName()) >= 0) {
+				frame = new Frame(METHOD);
+				frame.method = new Method(statement.get(nameIndex).text, 0, 1);
+				frame.method.setStartLine(statement.get(nameIndex).line);
+				frame.lastLine = statement.get(nameIndex).line - 1;
+				for (int i = nameIndex; i < statement.size(); i++) {
+					addLines(frame, statement.get(i));
+				}
+				addLines(frame, brace);
+				top.type.getMethods().add(frame.method);
+			} else {
+				frame = new Frame(BLOCK);
+			}
+
+			frames.push(frame);
+			statement.clear();
+			pendingType = null;
+			recordName = null;
+		}
+
+		private void close(Token brace) {
+			if (!frames.isEmpty()) {
+				Frame frame = frames.pop();
+				if (frame.kind == NAMESPACE) {
+					packageName = frame.previousPackage;
+				} else if (frame.kind == METHOD) {
+					frame.method.setEndLine(brace.line);
+				}
+			}
+			statement.clear();
+			pendingType = null;
+		}
+
+		private void endStatement() {
+			if (!statement.isEmpty() && (statement.get(0).is("package") || statement.get(0).is("namespace"))) {
+				packageName = qualifiedName("");
+			}
+			statement.clear();
+			pendingType = null;
+		}
+
+		private String qualifiedName(String parent) {
+			StringBuilder name = new StringBuilder();
+			for (int i = 1; i < statement.size(); i++) {
+				name.append(statement.get(i).text);
+			}
+
+			if (parent.isEmpty() || name.length() == 0) {
+				return parent.isEmpty() ? name.toString() : parent;
+			}
+			return parent + "." + name;
+		}
+
+		/*
+		 * The method name is the first identifier followed by a parenthesis, out of
+		 * annotations and attributes. Declarations with an assignment before it are
+		 * fields.
+		 */
+		private int findMethodName() {
+			int parens = 0, brackets = 0;
+			for (int i = 0; i < statement.size() - 1; i++) {
+				Token token = statement.get(i);
+				if (token.is("(")) {
+					parens++;
+				} else if (token.is(")")) {
+					parens--;
+				} else if (token.is("[")) {
+					brackets++;
+				} else if (token.is("]")) {
+					brackets--;
+				} else if (token.is("=") && parens == 0 && brackets == 0) {
+					return -1;
+				} else if (token.kind == IDENTIFIER && parens == 0 && brackets == 0
+						&& statement.get(i + 1).is("(") && !NOT_METHODS.contains(token.text)
+						&& (i == 0 || !statement.get(i - 1).is("@"))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private Package getPackage() {
+			Package p = packages.get(packageName);
+			if (p == null) {
+				p = new Package(packageName, new ArrayList<Class>());
+				packages.put(packageName, p);
+			}
+			return p;
+		}
+
+		private AnalysisResult getResult() {
+			int loc = 0, cyclo = 0;
+			for (Package p : packages.values()) {
+				for (Class c : p.getClasses()) {
+					for (Method m : c.getMethods()) {
+						loc += m.getLoc();
+						cyclo += m.getComplexity();
+					}
+				}
+			}
+			return new AnalysisResult(new ArrayList<Package>(packages.values()), loc, cyclo);
+		}
+
+	}
+
+}
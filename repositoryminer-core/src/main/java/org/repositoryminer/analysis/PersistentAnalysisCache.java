@@ -0,0 +1,214 @@
+package org.repositoryminer.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.bson.Document;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Append-only store of analysis results that survives between runs. Each entry
+ * is a line made of the key (the blob id and the analyzer version) and the
+ * result as JSON. Only the offsets of the entries are kept in memory, the
+ * results are read from the file on demand.
+ * <p>
+ * Entries are appended whole under a lock of the file, so that miners of
+ * several processes can share the same directory. Entries appended by other
+ * processes after the store is opened are seen by the next run.
+ */
+public class PersistentAnalysisCache implements Closeable {
+
+	private static final String FILE_NAME = "analysis-cache.db";
+
+	// file locks are held by the process, so the stores of a process take turns
+	private static final Map<String, Object> FILE_MONITORS = new ConcurrentHashMap<String, Object>();
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private Object monitor;
+	private String version;
+	private Map<String, long[]> index = new HashMap<String, long[]>();
+	private long hits;
+	private long misses;
+
+	/**
+	 * @param directory
+	 *            the directory where the store is kept.
+	 * @param version
+	 *            the analyzer version, results from other versions are ignored.
+	 * @throws IOException
+	 */
+	public PersistentAnalysisCache(String directory, String version) throws IOException {
+		File folder = new File(directory);
+		FileUtils.forceMkdir(folder);
+
+		File dbFile = new File(folder, FILE_NAME);
+		this.version = version;
+		this.file = new RandomAccessFile(dbFile, "rw");
+		this.channel = file.getChannel();
+		this.monitor = FILE_MONITORS.computeIfAbsent(dbFile.getCanonicalPath(), path -> new Object());
+
+		synchronized (monitor) {
+			FileLock lock = channel.lock();
+			try {
+				load();
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the stored result of a blob.
+	 * 
+	 * @param blobId
+	 *            the blob id.
+	 * @return the stored result or null.
+	 * @throws IOException
+	 */
+	public AnalysisResult get(ObjectId blobId) throws IOException {
+		long[] position;
+		synchronized (this) {
+			position = index.get(getKey(blobId));
+			if (position == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+		}
+
+		// stored entries never move, so they are read without any lock
+		ByteBuffer json = ByteBuffer.allocate((int) position[1]);
+		while (json.hasRemaining()) {
+			if (channel.read(json, position[0] + json.position()) < 0) {
+				throw new IOException("Truncated entry in the analysis cache.");
+			}
+		}
+
+		return AnalysisResult.parseDocument(Document.parse(new String(json.array(), StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Stores the result of a blob, if it was not stored before.
+	 * 
+	 * @param blobId
+	 *            the blob id.
+	 * @param result
+	 *            the analysis result.
+	 * @throws IOException
+	 */
+	public void put(ObjectId blobId, AnalysisResult result) throws IOException {
+		String key = getKey(blobId);
+		synchronized (this) {
+			if (index.containsKey(key)) {
+				return;
+			}
+		}
+
+		byte[] keyBytes = (key + '\t').getBytes(StandardCharsets.UTF_8);
+		byte[] json = result.toDocument().toJson().getBytes(StandardCharsets.UTF_8);
+		ByteBuffer entry = ByteBuffer.allocate(keyBytes.length + json.length + 1);
+		entry.put(keyBytes).put(json).put((byte) '\n');
+		entry.flip();
+
+		long offset;
+		synchronized (monitor) {
+			FileLock lock = channel.lock();
+			try {
+				offset = channel.size();
+				while (entry.hasRemaining()) {
+					channel.write(entry, offset + entry.position());
+				}
+			} finally {
+				lock.release();
+			}
+		}
+
+		synchronized (this) {
+			index.put(key, new long[] { offset + keyBytes.length, json.length });
+		}
+	}
+
+	/**
+	 * @return the number of lookups answered by the store.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups not answered by the store.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public void close() throws IOException {
+		// closing a descriptor releases the locks of the process on the file
+		synchronized (monitor) {
+			file.close();
+		}
+	}
+
+	private String getKey(ObjectId blobId) {
+		return blobId.name() + ':' + version;
+	}
+
+	/*
+	 * Indexes the complete entries of the current version. A trailing incomplete
+	 * entry, left by an interrupted run, is discarded.
+	 */
+	private void load() throws IOException {
+		String suffix = ":" + version;
+		long validLength = 0;
+
+		// read through the locked channel, closing another descriptor of the
+		// file would release the lock
+		channel.position(0);
+		InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+		StringBuilder key = new StringBuilder();
+		long position = 0;
+		long jsonOffset = -1;
+		int b;
+
+		while ((b = in.read()) != -1) {
+			position++;
+			if (jsonOffset < 0) {
+				if (b == '\t') {
+					jsonOffset = position;
+				} else {
+					key.append((char) b);
+				}
+			} else if (b == '\n') {
+				String entryKey = key.toString();
+				if (entryKey.endsWith(suffix)) {
+					index.put(entryKey, new long[] { jsonOffset, position - 1 - jsonOffset });
+				}
+
+				validLength = position;
+				key.setLength(0);
+				jsonOffset = -1;
+			}
+		}
+
+		// the file is locked, so a trailing incomplete entry was left by a crash
+		if (channel.size() > validLength) {
+			channel.truncate(validLength);
+		}
+	}
+
+}
@@ -0,0 +1,204 @@
+package org.repositoryminer.analysis;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.repositoryminer.domain.Class;
+import org.repositoryminer.domain.Method;
+import org.repositoryminer.domain.Package;
+
+/**
+ * Holds the metrics of all the source files of a repository version. The
+ * results of the files are merged by package and class, and the totals are
+ * available at project, package and class level. Files that could not be
+ * measured are counted apart, with the reason.
+ */
+public class SnapshotMetrics {
+
+	private String commit;
+	private int files;
+	private int loc;
+	private int cyclo;
+	private Map<String, Package> packages = new LinkedHashMap<String, Package>();
+	private Map<String, Class> classes = new LinkedHashMap<String, Class>();
+	private Map<String, String> skippedFiles = new LinkedHashMap<String, String>();
+
+	/**
+	 * @param commit
+	 *            the hash of the measured commit.
+	 */
+	public SnapshotMetrics(String commit) {
+		this.commit = commit;
+	}
+
+	/**
+	 * Adds the metrics of a file. The result is copied, since analysis results
+	 * are shared through the caches.
+	 * 
+	 * @param result
+	 *            the metrics of the file.
+	 */
+	public void add(AnalysisResult result) {
+		files++;
+		loc += result.getLoc();
+		cyclo += result.getCyclo();
+
+		for (Package p : nonNull(result.getPackages())) {
+			Package target = packages.get(p.getName());
+			if (target == null) {
+				target = new Package(p.getName(), new ArrayList<Class>());
+				packages.put(p.getName(), target);
+			}
+
+			for (Class c : nonNull(p.getClasses())) {
+				String key = p.getName() + '/' + c.getName();
+				Class targetClass = classes.get(key);
+				if (targetClass == null) {
+					targetClass = new Class(c.getName(), new ArrayList<Method>());
+					classes.put(key, targetClass);
+					target.getClasses().add(targetClass);
+				}
+
+				for (Method m : nonNull(c.getMethods())) {
+					Method method = new Method(m.getName(), m.getLoc(), m.getComplexity());
+					method.setStartLine(m.getStartLine());
+					method.setEndLine(m.getEndLine());
+					targetClass.getMethods().add(method);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records a file left out of the metrics.
+	 * 
+	 * @param path
+	 *            the file path.
+	 * @param reason
+	 *            why the file was not measured.
+	 */
+	public void addSkipped(String path, String reason) {
+		skippedFiles.put(path, reason);
+	}
+
+	/**
+	 * @param p
+	 *            a package.
+	 * @return the lines of code of the methods of a package.
+	 */
+	public static int getLoc(Package p) {
+		int total = 0;
+		for (Class c : nonNull(p.getClasses())) {
+			total += getLoc(c);
+		}
+		return total;
+	}
+
+	/**
+	 * @param p
+	 *            a package.
+	 * @return the cyclomatic complexity of the methods of a package.
+	 */
+	public static int getCyclo(Package p) {
+		int total = 0;
+		for (Class c : nonNull(p.getClasses())) {
+			total += getCyclo(c);
+		}
+		return total;
+	}
+
+	/**
+	 * @param c
+	 *            a class.
+	 * @return the lines of code of the methods of a class.
+	 */
+	public static int getLoc(Class c) {
+		int total = 0;
+		for (Method m : nonNull(c.getMethods())) {
+			total += m.getLoc();
+		}
+		return total;
+	}
+
+	/**
+	 * @param c
+	 *            a class.
+	 * @return the cyclomatic complexity of the methods of a class.
+	 */
+	public static int getCyclo(Class c) {
+		int total = 0;
+		for (Method m : nonNull(c.getMethods())) {
+			total += m.getComplexity();
+		}
+		return total;
+	}
+
+	/**
+	 * Converts the snapshot metrics to a document, with the totals of each
+	 * package and class.
+	 * 
+	 * @return a document.
+	 */
+	public Document toDocument() {
+		List<Document> packagesDocs = new ArrayList<Document>();
+		for (Package p : packages.values()) {
+			List<Document> classesDocs = new ArrayList<Document>();
+			for (Class c : p.getClasses()) {
+				classesDocs.add(new Document("name", c.getName()).append("loc", getLoc(c))
+						.append("cyclo", getCyclo(c)).append("methods", Method.toDocumentList(c.getMethods())));
+			}
+			packagesDocs.add(new Document("name", p.getName()).append("loc", getLoc(p)).append("cyclo", getCyclo(p))
+					.append("classes", classesDocs));
+		}
+
+		List<Document> skippedDocs = new ArrayList<Document>();
+		for (Map.Entry<String, String> skipped : skippedFiles.entrySet()) {
+			skippedDocs.add(new Document("path", skipped.getKey()).append("reason", skipped.getValue()));
+		}
+
+		return new Document("commit", commit).append("files", files).append("loc", loc).append("cyclo", cyclo)
+				.append("packages", packagesDocs).append("skipped_files", skippedDocs);
+	}
+
+	private static <E> List<E> nonNull(List<E> list) {
+		return list != null ? list : new ArrayList<E>();
+	}
+
+	public String getCommit() {
+		return commit;
+	}
+
+	public int getFiles() {
+		return files;
+	}
+
+	public int getLoc() {
+		return loc;
+	}
+
+	public int getCyclo() {
+		return cyclo;
+	}
+
+	public List<Package> getPackages() {
+		return new ArrayList<Package>(packages.values());
+	}
+
+	/**
+	 * @return the number of files left out of the metrics.
+	 */
+	public int getSkippedCount() {
+		return skippedFiles.size();
+	}
+
+	/**
+	 * @return why each file left out of the metrics was not measured, by path.
+	 */
+	public Map<String, String> getSkippedFiles() {
+		return skippedFiles;
+	}
+
+}
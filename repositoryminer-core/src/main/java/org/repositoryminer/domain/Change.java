@@ -23,6 +23,8 @@ public class Change {
     private int cycloBefore;
     private List<Package> packages;
     private List<Package> packagesBefore;
+    private List<String> touchedMethods;
+    private String skipReason;
 
     public Change() {
     }
@@ -43,6 +45,39 @@ public class Change {
         this.packagesBefore = packagesBefore;
     }
 
+    /**
+     * @return the qualified names of the methods whose lines were edited, in
+     *         either version of the file, or null if they were not recorded.
+     */
+    public List<String> getTouchedMethods() {
+        return touchedMethods;
+    }
+
+    public void setTouchedMethods(List<String> touchedMethods) {
+        this.touchedMethods = touchedMethods;
+    }
+
+    /**
+     * @return why the metrics of the file were not measured, or null if they
+     *         were. A skipped version of the file is named in the reason, the
+     *         metrics of the other one are kept. Blobs that could not be read
+     *         and failed diffs are reported here as well.
+     */
+    public String getSkipReason() {
+        return skipReason;
+    }
+
+    public void setSkipReason(String skipReason) {
+        this.skipReason = skipReason;
+    }
+
+    /**
+     * @return true if the metrics of the file were not measured, and are zero.
+     */
+    public boolean isMetricsSkipped() {
+        return skipReason != null;
+    }
+
     public Change(String newPath, String oldPath,
                   int linesAdded, int linesRemoved,
                   ChangeType type,
@@ -84,6 +119,10 @@ public class Change {
                     doc.getInteger("cyclo"), doc.getInteger("cycloBefore"),
                     Package.parseDocuments(doc.get("packages", List.class)),
                     Package.parseDocuments(doc.get("packagesBefore", List.class)));
+            change.setSkipReason(doc.getString("skip_reason"));
+            if (doc.containsKey("touched_methods")) {
+                change.setTouchedMethods(doc.getList("touched_methods", String.class));
+            }
             changes.add(change);
         }
         return changes;
@@ -109,7 +148,9 @@ public class Change {
                     .append("cyclo", c.getCyclo())
                     .append("cycloBefore", c.getCycloBefore())
                     .append("packages", Package.toDocumentList(c.getPackages()))
-                    .append("packagesBefore", Package.toDocumentList(c.getPackagesBefore()));
+                    .append("packagesBefore", Package.toDocumentList(c.getPackagesBefore()))
+                    .append("touched_methods", c.getTouchedMethods())
+                    .append("skip_reason", c.getSkipReason());
             list.add(doc);
         }
         return list;
@@ -23,7 +23,8 @@ public class Commit {
 	private Date committerDate;
 	private boolean merge;
 	private ObjectId repository;
-
+	private Integer projectLoc;
+	private Integer projectCyclo;
 
 	/**
 	 * Converts database documents to commits.
@@ -55,6 +56,8 @@ public class Commit {
 				Change.parseDocuments(document.get("changes", List.class)), document.get("parents", List.class),
 				document.getDate("author_date"), document.getDate("committer_date"),
 				document.getBoolean("merge", false), document.getObjectId("repository"));
+		commit.setProjectLoc(document.getInteger("project_loc"));
+		commit.setProjectCyclo(document.getInteger("project_cyclo"));
 		return commit;
 	}
 
@@ -68,7 +71,8 @@ public class Commit {
 		doc.append("hash", hash).append("author", author.toDocument()).append("committer", committer.toDocument())
 				.append("message", message).append("changes", Change.toDocumentList(changes)).append("parents", parents)
 				.append("author_date", authorDate.getTime()).append("committer_date", committerDate.getTime())
-				.append("merge", merge).append("repository", repository);
+				.append("merge", merge).append("repository", repository).append("project_loc", projectLoc)
+				.append("project_cyclo", projectCyclo);
 		return doc;
 	}
 
@@ -184,4 +188,28 @@ public class Commit {
 		this.repository = repository;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * @return the lines of code of the whole project at this commit, or null if
+	 *         they were not computed.
+	 */
+	public Integer getProjectLoc() {
+		return projectLoc;
+	}
+
+	public void setProjectLoc(Integer projectLoc) {
+		this.projectLoc = projectLoc;
+	}
+
+	/**
+	 * @return the cyclomatic complexity of the whole project at this commit, or
+	 *         null if it was not computed.
+	 */
+	public Integer getProjectCyclo() {
+		return projectCyclo;
+	}
+
+	public void setProjectCyclo(Integer projectCyclo) {
+		this.projectCyclo = projectCyclo;
+	}
+
+}
@@ -13,6 +13,9 @@ public class Method {
     private String name;
     private int loc;
     private int complexity;
+    // the lines of the declaration and of the closing brace, zero when unknown
+    private int startLine;
+    private int endLine;
 
     public Method(String name, int loc, int complexity) {
         this.name = name;
@@ -37,6 +40,8 @@ public class Method {
         for (Document doc : documents) {
             Method method = new Method(doc.getString("name"), doc.getInteger("loc", 0),
                     doc.getInteger("complexity", 0));
+            method.setStartLine(doc.getInteger("start_line", 0));
+            method.setEndLine(doc.getInteger("end_line", 0));
             methods.add(method);
         }
         return methods;
@@ -53,7 +58,8 @@ public class Method {
         for (Method c : methods) {
             Document doc = new Document();
             doc.append("name", c.getName()).append("loc", c.getLoc())
-                    .append("complexity", c.getComplexity());
+                    .append("complexity", c.getComplexity())
+                    .append("start_line", c.getStartLine()).append("end_line", c.getEndLine());
             list.add(doc);
         }
         return list;
@@ -82,4 +88,20 @@ public class Method {
     public void setComplexity(int complexity) {
         this.complexity = complexity;
     }
+
+    public int getStartLine() {
+        return startLine;
+    }
+
+    public void setStartLine(int startLine) {
+        this.startLine = startLine;
+    }
+
+    public int getEndLine() {
+        return endLine;
+    }
+
+    public void setEndLine(int endLine) {
+        this.endLine = endLine;
+    }
 }
\ No newline at end of file
@@ -18,7 +18,8 @@ public class Reference {
 	private String path;
 	private ReferenceType type;
 	private Date lastCommitDate;
-	private List<String> commits;
+	private List<int[]> commitRanges;
+	private String tip;
 
 	/**
 	 * Converts a list of documents to references.
@@ -44,17 +45,47 @@ public class Reference {
 	 */
 	@SuppressWarnings("unchecked")
 	public static Reference parseDocument(Document document) {
+		List<int[]> commitRanges = null;
+		List<Document> rangesDocs = document.get("commit_ranges", List.class);
+		if (rangesDocs != null) {
+			commitRanges = new ArrayList<int[]>();
+			for (Document rangeDoc : rangesDocs) {
+				commitRanges.add(new int[] { rangeDoc.getInteger("s"), rangeDoc.getInteger("e") });
+			}
+		}
+
 		Reference r = new Reference(document.getObjectId("_id"),
 				document.getObjectId("repository"),
 				document.getString("name"),
 				document.getString("path"),
 				ReferenceType.valueOf(document.getString("type")),
 				document.getDate("last_commit_date"),
-				document.get("commits", List.class));
+				commitRanges);
+		r.setTip(document.getString("tip"));
 
 		return r;
 	}
 
+	/**
+	 * Converts ranges of commit ordinals to documents.
+	 * 
+	 * @param commitRanges
+	 *            the inclusive ranges [start, end].
+	 * 
+	 * @return a list of documents.
+	 */
+	public static List<Document> toRangesDocuments(List<int[]> commitRanges) {
+		if (commitRanges == null) {
+			return null;
+		}
+
+		List<Document> docs = new ArrayList<Document>();
+		for (int[] range : commitRanges) {
+			docs.add(new Document("s", range[0]).append("e", range[1]));
+		}
+		return docs;
+	}
+
 	/**
 	 * Converts a reference to a document.
 	 * 
@@ -67,21 +98,22 @@ public class Reference {
 			.append("path", path)
 			.append("type", type.toString())
 			.append("last_commit_date", lastCommitDate)
-			.append("commits", commits);
+			.append("commit_ranges", toRangesDocuments(commitRanges))
+			.append("tip", tip);
 		return doc;
 	}
 
 	public Reference() {}
 
 	public Reference(ObjectId id, ObjectId repository, String name, String path, ReferenceType type,
-			Date lastCommitDate, List<String> commits) {
+			Date lastCommitDate, List<int[]> commitRanges) {
 		this.id = id;
 		this.repository = repository;
 		this.name = name;
 		this.path = path;
 		this.type = type;
 		this.lastCommitDate = lastCommitDate;
-		this.commits = commits;
+		this.commitRanges = commitRanges;
 	}
 
 	public ObjectId getId() {
@@ -132,12 +164,27 @@ public class Reference {
 		this.lastCommitDate = lastCommitDate;
 	}
 	
-	public List<String> getCommits() {
-		return commits;
+	/**
+	 * @return the ascending inclusive ranges [start, end] of the ordinals of the
+	 *         commits reachable from this reference.
+	 */
+	public List<int[]> getCommitRanges() {
+		return commitRanges;
+	}
+
+	public void setCommitRanges(List<int[]> commitRanges) {
+		this.commitRanges = commitRanges;
+	}
+
+	/**
+	 * @return the hash of the commit the reference points to.
+	 */
+	public String getTip() {
+		return tip;
 	}
 
-	public void setCommits(List<String> commits) {
-		this.commits = commits;
+	public void setTip(String tip) {
+		this.tip = tip;
 	}
 
 }
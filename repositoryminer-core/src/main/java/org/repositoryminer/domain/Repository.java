@@ -17,6 +17,7 @@ public class Repository {
 	private SCMType scm;
 	private String description;
 	private List<Developer> contributors;
+	private List<String> minedTips;
 
 	/**
 	 * Converts a repository to a document.
@@ -26,7 +27,8 @@ public class Repository {
 	public Document toDocument() {
 		Document doc = new Document();
 		doc.append("key", key).append("name", name).append("path", path).append("scm", scm.toString())
-		.append("description", description).append("contributors", Developer.toDocumentList(contributors));
+		.append("description", description).append("contributors", Developer.toDocumentList(contributors))
+		.append("mined_tips", minedTips);
 		return doc;
 	}
 
@@ -43,9 +45,11 @@ public class Repository {
 			return null;
 		}
 
-		return new Repository(doc.getObjectId("_id"), doc.getString("key"), doc.getString("name"),
+		Repository repository = new Repository(doc.getObjectId("_id"), doc.getString("key"), doc.getString("name"),
 				doc.getString("path"), SCMType.parse(doc.getString("scm")), doc.getString("description"),
 				Developer.parseDocuments(doc.get("contributors", List.class)));
+		repository.setMinedTips(doc.get("mined_tips", List.class));
+		return repository;
 	}
 
 	public Repository() {}
@@ -117,4 +121,16 @@ public class Repository {
 		this.contributors = contributors;
 	}
 
+	/**
+	 * @return the commits pointed by the references when the repository was last
+	 *         mined.
+	 */
+	public List<String> getMinedTips() {
+		return minedTips;
+	}
+
+	public void setMinedTips(List<String> minedTips) {
+		this.minedTips = minedTips;
+	}
+
 }
\ No newline at end of file
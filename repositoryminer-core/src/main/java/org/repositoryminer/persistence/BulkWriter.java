@@ -0,0 +1,111 @@
+package org.repositoryminer.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.conversions.Bson;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+
+/**
+ * Buffers inserts and upserts and sends them as unordered bulk writes. A batch is flushed
+ * when it reaches the maximum number of documents or the maximum size in
+ * bytes, and the remaining documents are flushed on {@link #close()}. Each
+ * document is encoded once, when it is buffered.
+ * <p>
+ * An instance must not be shared between threads.
+ */
+public class BulkWriter implements AutoCloseable {
+
+	private static final BulkWriteOptions OPTIONS = new BulkWriteOptions().ordered(false);
+	private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+
+	private MongoCollection<RawBsonDocument> collection;
+	private Codec<Document> codec;
+	private int maxDocuments;
+	private long maxBytes;
+
+	private List<WriteModel<RawBsonDocument>> batch = new ArrayList<WriteModel<RawBsonDocument>>();
+	private long batchBytes = 0;
+
+	/**
+	 * @param collection
+	 *            the target collection.
+	 * @param maxDocuments
+	 *            the maximum number of documents in a batch.
+	 * @param maxBytes
+	 *            the maximum size of a batch in bytes.
+	 */
+	BulkWriter(MongoCollection<Document> collection, int maxDocuments, long maxBytes) {
+		this.collection = collection.withDocumentClass(RawBsonDocument.class);
+		this.codec = collection.getCodecRegistry().get(Document.class);
+		this.maxDocuments = maxDocuments;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Buffers a document to be inserted.
+	 * 
+	 * @param document
+	 *            the document to be stored.
+	 */
+	public void insert(Document document) {
+		RawBsonDocument raw = new RawBsonDocument(document, codec);
+		add(new InsertOneModel<RawBsonDocument>(raw), raw.getByteBuffer().remaining());
+	}
+
+	/**
+	 * Buffers a document replacing the one matched by a filter, which is
+	 * inserted if none matches. Writing the same document twice leaves a single
+	 * copy of it.
+	 * 
+	 * @param filter
+	 *            the filter of the replaced document.
+	 * @param document
+	 *            the document to be stored.
+	 */
+	public void upsert(Bson filter, Document document) {
+		RawBsonDocument raw = new RawBsonDocument(document, codec);
+		add(new ReplaceOneModel<RawBsonDocument>(filter, raw, UPSERT), raw.getByteBuffer().remaining());
+	}
+
+	private void add(WriteModel<RawBsonDocument> model, int size) {
+		if (!batch.isEmpty() && batchBytes + size > maxBytes) {
+			flush();
+		}
+
+		batch.add(model);
+		batchBytes += size;
+
+		if (batch.size() >= maxDocuments) {
+			flush();
+		}
+	}
+
+	/**
+	 * Sends the buffered documents.
+	 */
+	public void flush() {
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		collection.bulkWrite(batch, OPTIONS);
+		batch = new ArrayList<WriteModel<RawBsonDocument>>();
+		batchBytes = 0;
+	}
+
+	@Override
+	public void close() {
+		flush();
+	}
+
+}
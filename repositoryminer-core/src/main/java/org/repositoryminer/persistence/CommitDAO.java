@@ -1,6 +1,10 @@
 package org.repositoryminer.persistence;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.bson.Document;
 import org.bson.conversions.Bson;
@@ -8,7 +12,13 @@ import org.bson.types.ObjectId;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 
 /**
  * This class handles rm_commit collection.
@@ -16,6 +26,7 @@ import com.mongodb.client.model.Filters;
 public class CommitDAO extends GenericDAO {
 
 	private static final String COLLECTION_NAME = "rm_commit";
+	private static final int UPDATE_BATCH_SIZE = 1000;
 
 	public CommitDAO() {
 		super(COLLECTION_NAME);
@@ -35,6 +46,112 @@ public class CommitDAO extends GenericDAO {
 		return findOne(whereClause, projection);
 	}
 
+	/**
+	 * Finds a commit of a repository by its hash.
+	 * 
+	 * @param hash
+	 *            the commit hash.
+	 * @param repositoryId
+	 *            the repository id.
+	 * @param projection
+	 *            the query projection.
+	 * @return a commit.
+	 */
+	public Document findByHash(String hash, ObjectId repositoryId, Bson projection) {
+		return findOne(new BasicDBObject("repository", repositoryId).append("hash", hash), projection);
+	}
+
+	/**
+	 * Sets the reachability ordinals of the commits of a repository. The updates
+	 * are sent in unordered bulk batches.
+	 * 
+	 * @param repositoryId
+	 *            the repository id.
+	 * @param ordinals
+	 *            the ordinals by commit hash.
+	 */
+	public void updateOrdinals(ObjectId repositoryId, Map<String, Integer> ordinals) {
+		List<WriteModel<Document>> batch = new ArrayList<WriteModel<Document>>();
+		for (Map.Entry<String, Integer> entry : ordinals.entrySet()) {
+			batch.add(new UpdateOneModel<Document>(byHash(repositoryId, entry.getKey()),
+					new Document("$set", new Document("ordinal", entry.getValue()))));
+
+			if (batch.size() == UPDATE_BATCH_SIZE) {
+				collection.bulkWrite(batch, new BulkWriteOptions().ordered(false));
+				batch = new ArrayList<WriteModel<Document>>();
+			}
+		}
+
+		if (!batch.isEmpty()) {
+			collection.bulkWrite(batch, new BulkWriteOptions().ordered(false));
+		}
+	}
+
+	/**
+	 * Creates, if it does not exist, the index used to find the commits of a
+	 * repository by their hashes.
+	 */
+	public void createHashIndex() {
+		collection.createIndex(Indexes.ascending("repository", "hash"));
+	}
+
+	/**
+	 * Creates, if it does not exist, the index used to find the commits of a
+	 * repository by their ordinals.
+	 */
+	public void createOrdinalIndex() {
+		collection.createIndex(Indexes.ascending("repository", "ordinal"));
+	}
+
+	/**
+	 * @param repositoryId
+	 *            the repository id.
+	 * @return the highest reachability ordinal of the commits of a repository,
+	 *         or -1 if none has an ordinal.
+	 */
+	public int findMaxOrdinal(ObjectId repositoryId) {
+		Document doc = collection.find(Filters.and(Filters.eq("repository", repositoryId),
+				Filters.exists("ordinal"))).sort(Sorts.descending("ordinal")).limit(1)
+				.projection(Projections.include("ordinal")).first();
+		return doc != null ? doc.getInteger("ordinal") : -1;
+	}
+
+	/**
+	 * Retrieves the reachability ordinals of some commits of a repository.
+	 * 
+	 * @param repositoryId
+	 *            the repository id.
+	 * @param hashes
+	 *            the commit hashes.
+	 * @return the ordinals by commit hash, commits without an ordinal are left
+	 *         out.
+	 */
+	public Map<String, Integer> findOrdinals(ObjectId repositoryId, Collection<String> hashes) {
+		Map<String, Integer> ordinals = new HashMap<String, Integer>();
+		List<String> batch = new ArrayList<String>(hashes);
+		for (int i = 0; i < batch.size(); i += UPDATE_BATCH_SIZE) {
+			List<String> hashesBatch = batch.subList(i, Math.min(i + UPDATE_BATCH_SIZE, batch.size()));
+			for (Document doc : collection.find(Filters.and(Filters.eq("repository", repositoryId),
+					Filters.in("hash", hashesBatch))).projection(Projections.include("hash", "ordinal"))) {
+				if (doc.getInteger("ordinal") != null) {
+					ordinals.put(doc.getString("hash"), doc.getInteger("ordinal"));
+				}
+			}
+		}
+		return ordinals;
+	}
+
+	/**
+	 * @param repositoryId
+	 *            the repository id.
+	 * @param hash
+	 *            the commit hash.
+	 * @return the filter of a commit of a repository.
+	 */
+	public static Bson byHash(ObjectId repositoryId, String hash) {
+		return Filters.and(Filters.eq("repository", repositoryId), Filters.eq("hash", hash));
+	}
+
 	/**
 	 * Deletes a commit by its hash.
 	 * 
@@ -59,6 +59,19 @@ public class GenericDAO {
 		collection.insertMany(documents);
 	}
 
+	/**
+	 * Creates a writer that inserts documents in unordered bulk batches.
+	 * 
+	 * @param maxDocuments
+	 *            the maximum number of documents in a batch.
+	 * @param maxBytes
+	 *            the maximum size of a batch in bytes.
+	 * @return the batch writer.
+	 */
+	public BulkWriter newBulkWriter(int maxDocuments, long maxBytes) {
+		return new BulkWriter(collection, maxDocuments, maxBytes);
+	}
+
 	/**
 	 * Updates one document.
 	 * 
@@ -1,15 +1,16 @@
 package org.repositoryminer.persistence;
 
-import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
+import org.repositoryminer.domain.Reference;
 import org.repositoryminer.domain.ReferenceType;
 
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
 
 /**
  * This class handles rm_reference collection.
@@ -52,7 +53,8 @@ public class ReferenceDAO extends GenericDAO {
 	}
 
 	/**
-	 * Finds a reference that contains certain commit.
+	 * Finds a reference that contains certain commit. The commit ordinal is
+	 * looked up and matched against the commit ranges of the references.
 	 * 
 	 * @param repositoryId
 	 *            the repository id.
@@ -63,21 +65,28 @@ public class ReferenceDAO extends GenericDAO {
 	 * @return a reference.
 	 */
 	public Document findByCommit(String repositoryId, String commitId, Bson projection) {
-		return findOne(Filters.and(Filters.eq("repository", new ObjectId(repositoryId)),
-				Filters.in("commits", Arrays.asList(commitId))), projection);
+		ObjectId repository = new ObjectId(repositoryId);
+		Document commit = new CommitDAO().findByHash(commitId, repository, Projections.include("ordinal"));
+		if (commit == null || commit.getInteger("ordinal") == null) {
+			return null;
+		}
+
+		int ordinal = commit.getInteger("ordinal");
+		return findOne(Filters.and(Filters.eq("repository", repository), Filters.elemMatch("commit_ranges",
+				Filters.and(Filters.lte("s", ordinal), Filters.gte("e", ordinal)))), projection);
 	}
 
 	/**
-	 * Updates the commits in a reference.
+	 * Updates the commit ranges in a reference.
 	 * 
 	 * @param id
 	 *            reference id.
-	 * @param commits
-	 *            the new commits.
+	 * @param commitRanges
+	 *            the new ranges of commit ordinals.
 	 */
-	public void updateOnlyCommits(String id, List<String> commits) {
+	public void updateOnlyCommitRanges(String id, List<int[]> commitRanges) {
 		collection.updateOne(Filters.eq("_id", new ObjectId(id)),
-				new Document("$set", new Document("commits", commits)));
+				new Document("$set", new Document("commit_ranges", Reference.toRangesDocuments(commitRanges))));
 	}
 
 	/**
@@ -93,18 +102,22 @@ public class ReferenceDAO extends GenericDAO {
 	}
 
 	/**
-	 * Updates the commits and last commit date in a reference.
+	 * Updates the commit ranges, tip and last commit date in a reference.
 	 * 
 	 * @param id
 	 *            reference id.
-	 * @param commits
-	 *            the new commits.
+	 * @param commitRanges
+	 *            the new ranges of commit ordinals.
+	 * @param tip
+	 *            the hash of the commit the reference points to.
 	 * @param lastCommitDate
 	 *            the new last commit date.
 	 */
-	public void updateCommitsAndLastCommitDate(ObjectId id, List<String> commits, Date lastCommitDate) {
-		collection.updateOne(Filters.eq("_id", id),
-				new Document("$set", new Document("commits", commits).append("last_commit_date", lastCommitDate)));
+	public void updateCommitRangesAndLastCommitDate(ObjectId id, List<int[]> commitRanges, String tip,
+			Date lastCommitDate) {
+		collection.updateOne(Filters.eq("_id", id), new Document("$set", new Document("commit_ranges",
+				Reference.toRangesDocuments(commitRanges)).append("tip", tip)
+						.append("last_commit_date", lastCommitDate)));
 	}
 
 	/**
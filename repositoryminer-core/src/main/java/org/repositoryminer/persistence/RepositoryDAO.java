@@ -56,4 +56,17 @@ public class RepositoryDAO extends GenericDAO {
 				new Document("$set", new Document("contributors", contributors)));
 	}
 
+	/**
+	 * Update the commits pointed by the references when the repository was mined.
+	 * 
+	 * @param repository
+	 *            the repository id.
+	 * @param minedTips
+	 *            the hashes of the mined tips.
+	 */
+	public void updateOnlyMinedTips(ObjectId repository, List<String> minedTips) {
+		collection.updateOne(Filters.eq("_id", repository),
+				new Document("$set", new Document("mined_tips", minedTips)));
+	}
+
 }
\ No newline at end of file
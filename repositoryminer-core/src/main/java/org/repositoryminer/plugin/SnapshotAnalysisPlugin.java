@@ -1,6 +1,14 @@
 package org.repositoryminer.plugin;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.bson.Document;
 import org.bson.types.ObjectId;
@@ -8,6 +16,7 @@ import org.repositoryminer.RepositoryMinerException;
 import org.repositoryminer.domain.SCMType;
 import org.repositoryminer.persistence.RepositoryDAO;
 import org.repositoryminer.scm.ISCM;
+import org.repositoryminer.scm.ISnapshot;
 import org.repositoryminer.scm.SCMFactory;
 import org.repositoryminer.util.RMFileUtils;
 import org.repositoryminer.util.StringUtils;
@@ -18,6 +27,16 @@ import com.mongodb.client.model.Projections;
  * This extension point is interesting for plugins that want to access the
  * repository and perform some sort of analysis in one or more of its versions,
  * such as static code analysis.
+ * <p>
+ * Plugins that read the files through {@link #openSnapshot(String)} should
+ * override {@link #requiresWorkingCopy()}, so the repository is neither copied
+ * nor checked out.
+ * <p>
+ * A list of snapshots can be analyzed in parallel with
+ * {@link #run(List, Object)} by plugins overriding {@link #usesSlots()}. Each
+ * thread gets its own working copy, which shares the stored history of the
+ * repository, and the plugin receives it in
+ * {@link #run(String, Object, SnapshotSlot)}.
  *
  * @param <T>
  *            some configuration.
@@ -28,6 +47,10 @@ public abstract class SnapshotAnalysisPlugin<T> {
 	protected ObjectId repositoryId;
 	protected ISCM scm;
 
+	private SCMType scmType;
+	private int snapshotSlots = 1;
+	private List<SnapshotSlot> slots = new ArrayList<SnapshotSlot>();
+
 	/**
 	 * This method is responsible for preparing the repository to run the plugin,
 	 * and should be called only once.
@@ -42,12 +65,49 @@ public abstract class SnapshotAnalysisPlugin<T> {
 			throw new RepositoryMinerException("Repository with the key " + repositoryKey + " does not exists");
 		}
 
-		scm = SCMFactory.getSCM(SCMType.valueOf(repoDoc.getString("scm")));
+		scmType = SCMType.valueOf(repoDoc.getString("scm"));
+		scm = SCMFactory.getSCM(scmType);
 		repositoryId = repoDoc.getObjectId("_id");
-		tmpRepository = RMFileUtils.copyFolderToTmp(repoDoc.getString("path"),
-				StringUtils.encodeToSHA1(repositoryId.toHexString()));
+		if (requiresWorkingCopy()) {
+			tmpRepository = RMFileUtils.copyFolderToTmp(repoDoc.getString("path"),
+					StringUtils.encodeToSHA1(repositoryId.toHexString()));
+			scm.open(tmpRepository);
+		} else {
+			scm.open(repoDoc.getString("path"));
+		}
+	}
+
+	/**
+	 * Tells whether the plugin analyzes a checked out copy of the repository. If
+	 * not, the repository is only read through snapshots.
+	 * 
+	 * @return true by default.
+	 */
+	protected boolean requiresWorkingCopy() {
+		return true;
+	}
 
-		scm.open(tmpRepository);
+	/**
+	 * Tells whether the plugin analyzes snapshots checked out in slots, through
+	 * {@link #run(String, Object, SnapshotSlot)}. If not, the slots are never
+	 * opened.
+	 * 
+	 * @return false by default.
+	 */
+	protected boolean usesSlots() {
+		return false;
+	}
+
+	/**
+	 * Opens a read-only view of the files of a repository version. It must be
+	 * closed after use.
+	 * 
+	 * @param snapshot
+	 *            the commit reference
+	 * @return the snapshot.
+	 */
+	protected ISnapshot openSnapshot(String snapshot) {
+		return scm.getSnapshot(snapshot);
 	}
 
 	/**
@@ -61,6 +121,104 @@ public abstract class SnapshotAnalysisPlugin<T> {
 	 */
 	public abstract void run(String snapshot, T config);
 
+	/**
+	 * Analyzes a repository version checked out in a snapshot slot. Plugins
+	 * analyzing snapshots in parallel must override it along with
+	 * {@link #usesSlots()}.
+	 * 
+	 * @param snapshot
+	 *            the commit reference
+	 * @param config
+	 *            some configuration
+	 * @param slot
+	 *            the working copy where the snapshot is checked out
+	 */
+	protected void run(String snapshot, T config, SnapshotSlot slot) {
+		synchronized (this) {
+			run(snapshot, config);
+		}
+	}
+
+	/**
+	 * Analyzes various repository versions, spreading them over the snapshot
+	 * slots. With a single slot, or if the plugin does not use the slots,
+	 * {@link #run(String, Object)} is called for each snapshot in order.
+	 * 
+	 * @param snapshots
+	 *            the commit references
+	 * @param config
+	 *            some configuration
+	 */
+	public void run(List<String> snapshots, final T config) {
+		if (snapshotSlots <= 1 || !usesSlots()) {
+			for (String snapshot : snapshots) {
+				run(snapshot, config);
+			}
+			return;
+		}
+
+		openSlots();
+		final BlockingQueue<SnapshotSlot> freeSlots = new ArrayBlockingQueue<SnapshotSlot>(slots.size(), false,
+				slots);
+		ExecutorService executor = Executors.newFixedThreadPool(slots.size());
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final String snapshot : snapshots) {
+				// the slots hold no references, so the snapshot is resolved here
+				final String hash = scm.resolve(snapshot).getHash();
+				futures.add(executor.submit(() -> {
+					SnapshotSlot slot = freeSlots.take();
+					try {
+						slot.getSCM().checkout(hash);
+						run(snapshot, config, slot);
+					} finally {
+						freeSlots.put(slot);
+					}
+					return null;
+				}));
+			}
+
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RepositoryMinerException(e);
+		} catch (ExecutionException e) {
+			throw new RepositoryMinerException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void openSlots() {
+		for (int i = slots.size(); i < snapshotSlots; i++) {
+			String path = RMFileUtils.concatFilePath(System.getProperty("java.io.tmpdir"),
+					StringUtils.encodeToSHA1(repositoryId.toHexString()) + "_slot" + i);
+			scm.createWorkingCopy(path);
+
+			ISCM slotScm = SCMFactory.getSCM(scmType);
+			slotScm.open(path);
+			slots.add(new SnapshotSlot(path, slotScm));
+		}
+	}
+
+	/**
+	 * @return the number of snapshots analyzed at the same time.
+	 */
+	public int getSnapshotSlots() {
+		return snapshotSlots;
+	}
+
+	/**
+	 * @param snapshotSlots
+	 *            the number of snapshots analyzed at the same time, each one in
+	 *            its own working copy.
+	 */
+	public void setSnapshotSlots(int snapshotSlots) {
+		this.snapshotSlots = snapshotSlots;
+	}
+
 	/**
 	 * This method is responsible for releasing the resources allocated to the
 	 * plugin execution, and should be called only once.
@@ -68,8 +226,16 @@ public abstract class SnapshotAnalysisPlugin<T> {
 	 * @throws IOException
 	 */
 	public void finish() throws IOException {
+		for (SnapshotSlot slot : slots) {
+			slot.getSCM().close();
+			RMFileUtils.deleteFolder(slot.getPath());
+		}
+		slots.clear();
+
 		scm.close();
-		RMFileUtils.deleteFolder(tmpRepository);
+		if (tmpRepository != null) {
+			RMFileUtils.deleteFolder(tmpRepository);
+		}
 	}
 
 }
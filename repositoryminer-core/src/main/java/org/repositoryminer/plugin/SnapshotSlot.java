@@ -0,0 +1,33 @@
+package org.repositoryminer.plugin;
+
+import org.repositoryminer.scm.ISCM;
+
+/**
+ * A working copy where a snapshot is checked out and analyzed, while the other
+ * slots analyze other snapshots.
+ */
+public class SnapshotSlot {
+
+	private String path;
+	private ISCM scm;
+
+	SnapshotSlot(String path, ISCM scm) {
+		this.path = path;
+		this.scm = scm;
+	}
+
+	/**
+	 * @return the folder of the working copy.
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return the SCM opened at the working copy.
+	 */
+	public ISCM getSCM() {
+		return scm;
+	}
+
+}
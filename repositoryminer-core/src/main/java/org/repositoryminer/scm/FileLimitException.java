@@ -0,0 +1,15 @@
+package org.repositoryminer.scm;
+
+/**
+ * Signals that a file was not analyzed because it exceeds one of the per-file
+ * limits of the SCM settings. Its message tells which one.
+ */
+class FileLimitException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	FileLimitException(String message) {
+		super(message);
+	}
+
+}
@@ -1,51 +1,51 @@
 package org.repositoryminer.scm;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.sql.SQLException;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
-import ASTMCore.ASTMSource.CompilationUnit;
-import com.google.gson.Gson;
 import gastmappers.Language;
-import gastmappers.Mapper;
-import gastmappers.MapperFactory;
-import gastmappers.exceptions.UnsupportedLanguageException;
-import metrics.*;
-import metrics.examcompletemetric.MetricClass;
-import metrics.examcompletemetric.MetricMethod;
-import metrics.examcompletemetric.MetricPackage;
-import metrics.exceptions.UnsupportedMetricException;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.LogCommand;
 import org.eclipse.jgit.api.ResetCommand.ResetType;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
-import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RenameDetector;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.errors.RevWalkException;
 import org.eclipse.jgit.errors.RevisionSyntaxException;
 import org.eclipse.jgit.lib.*;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
-import org.eclipse.jgit.treewalk.TreeWalk;
-import org.eclipse.jgit.util.io.DisabledOutputStream;
-import org.json.simple.JSONArray;
-import org.mapstruct.factory.Mappers;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.repositoryminer.RepositoryMinerException;
+import org.repositoryminer.analysis.AnalysisCache;
+import org.repositoryminer.analysis.AnalysisResult;
+import org.repositoryminer.analysis.AnalyzerRegistry;
+import org.repositoryminer.analysis.PersistentAnalysisCache;
+import org.repositoryminer.analysis.SnapshotMetrics;
 import org.repositoryminer.domain.*;
 import org.repositoryminer.domain.Class;
 import org.repositoryminer.domain.Package;
-import org.repositoryminer.mapper.PackageMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,20 +59,58 @@ public class GitSCM implements ISCM {
     private Repository repository;
 
     private Git git;
-    private int branchCounter = 0;
-
-    private String language = "java"; // Change this for C#
+    private List<RevWalk> openWalks = new ArrayList<RevWalk>();
+
+    private SCMConfig config;
+    private AnalysisCache analysisCache;
+    private RenameCache renameCache;
+    private PersistentAnalysisCache persistentCache;
+    private ExecutorService diffExecutor;
+    private ExecutorService analysisExecutor;
+    private List<GitSession> openSessions = new ArrayList<GitSession>();
+    private ThreadLocal<GitSession> sessions;
+    private AnalyzerRegistry analyzers;
 
     @Override
     public SCMType getSCM() {
         return SCMType.GIT;
     }
 
-    private PackageMapper packageMapper = Mappers.getMapper(PackageMapper.class);
-
     @Override
     public void open(String path) {
+        open(path, new SCMConfig());
+    }
+
+    @Override
+    public void open(String path, SCMConfig config) {
         LOG.info("Repository being opened.");
+        this.config = config;
+        if (config.isStatsOnly() && config.isProjectTotals()) {
+            throw new RepositoryMinerException("The project totals need the file metrics, which are not "
+                    + "measured in stats only mode.");
+        }
+        this.analysisCache = new AnalysisCache(config.getAnalysisCacheSize());
+        this.renameCache = new RenameCache(config.getRenameCacheSize());
+        this.sessions = ThreadLocal.withInitial(this::openSession);
+        this.analyzers = new AnalyzerRegistry(config.getAnalyzer(), config.isTouchedMethods());
+        // analyses abandoned after the timeout keep their thread, so they are bound
+        int defaultLimit = config.getAnalysisTimeout() > 0
+                ? Math.max(Runtime.getRuntime().availableProcessors(),
+                        Math.max(config.getAnalysisThreads(), config.getDiffThreads()))
+                : Integer.MAX_VALUE;
+        for (Map.Entry<String, Language> entry : config.getLanguages().entrySet()) {
+            Integer limit = config.getLanguageConcurrency().get(entry.getValue());
+            analyzers.register(entry.getKey(), entry.getValue(), limit != null ? limit : defaultLimit);
+        }
+        if (config.getDiffThreads() > 1) {
+            diffExecutor = Executors.newFixedThreadPool(config.getDiffThreads());
+        }
+        if (config.getAnalysisThreads() > 1) {
+            // a full queue makes the diff stage analyze the file itself
+            analysisExecutor = new ThreadPoolExecutor(config.getAnalysisThreads(), config.getAnalysisThreads(), 0L,
+                    TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(config.getAnalysisQueueSize()),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        }
 
         FileRepositoryBuilder repositoryBuilder = new FileRepositoryBuilder();
         File repoFolder = new File(path, ".git");
@@ -84,6 +122,11 @@ public class GitSCM implements ISCM {
         try {
             repository = repositoryBuilder.setGitDir(repoFolder).readEnvironment().findGitDir().build();
             git = new Git(repository);
+
+            if (config.getAnalysisCacheDirectory() != null) {
+                persistentCache = new PersistentAnalysisCache(config.getAnalysisCacheDirectory(),
+                        config.getAnalyzer().getVersion(config.isTouchedMethods()));
+            }
         } catch (IOException e) {
             throw new RepositoryMinerException(e);
         }
@@ -112,6 +155,7 @@ public class GitSCM implements ISCM {
             Commit commit = resolve(b.getName());
             Reference r = new Reference(null, null, b.getName().substring(i), b.getName(), ReferenceType.BRANCH,
                     commit.getCommitterDate(), null);
+            r.setTip(commit.getHash());
             refs.add(r);
             LOG.info(String.format("Branch %s analyzed.", r.getName()));
         }
@@ -129,6 +173,7 @@ public class GitSCM implements ISCM {
             Commit commit = resolve(t.getName());
             Reference r = new Reference(null, null, t.getName().substring(i), t.getName(), ReferenceType.TAG,
                     commit.getCommitterDate(), null);
+            r.setTip(commit.getHash());
             refs.add(r);
             LOG.info(String.format("Tag %s analyzed.", r.getName()));
         }
@@ -156,23 +201,128 @@ public class GitSCM implements ISCM {
     }
 
     @Override
-    public List<Commit> getCommits(Set<String> selectedCommits, boolean skip_content) {
+    public Iterator<Commit> iterateCommits(boolean skip_content, String branchName) {
         LOG.info("Extracting commits.");
-        List<Commit> commits = new ArrayList<Commit>();
+
+        RevWalk revWalk = new RevWalk(repository);
+        revWalk.setRetainBody(false);
+        openWalks.add(revWalk);
 
         try {
-            for (RevCommit revCommit : git.log().all().call()) {
-                if (selectedCommits.contains(revCommit.getName())) {
-                    LOG.info(String.format("Analyzing commit %s.", revCommit.getName()));
-                    commits.add(processCommit(revCommit, true));
+            revWalk.markStart(revWalk.parseCommit(repository.resolve(branchName)));
+            markStartFromAllRefs(revWalk);
+        } catch (IOException e) {
+            close();
+            throw new RepositoryMinerException(e);
+        }
+
+        sortParentsFirst(revWalk);
+        return new CommitIterator(revWalk, revWalk.iterator(), skip_content);
+    }
+
+    @Override
+    public List<Commit> getCommits(Set<String> selectedCommits, boolean skip_content) {
+        List<Commit> commits = new ArrayList<Commit>();
+        iterateCommits(selectedCommits, skip_content).forEachRemaining(commits::add);
+        return commits;
+    }
+
+    @Override
+    public Iterator<Commit> iterateCommits(Set<String> selectedCommits, boolean skip_content) {
+        LOG.info("Extracting commits.");
+
+        RevWalk revWalk = new RevWalk(repository);
+        revWalk.setRetainBody(false);
+        openWalks.add(revWalk);
+
+        if (config.isProjectTotals()) {
+            return new CommitIterator(revWalk, selectParentsFirst(revWalk, selectedCommits), skip_content);
+        }
+
+        // the commits are looked up by id, no matter the size of the history
+        Iterator<String> hashes = selectedCommits.iterator();
+        Iterator<RevCommit> source = new Iterator<RevCommit>() {
+
+            @Override
+            public boolean hasNext() {
+                return hashes.hasNext();
+            }
+
+            @Override
+            public RevCommit next() {
+                try {
+                    return revWalk.parseCommit(ObjectId.fromString(hashes.next()));
+                } catch (IOException e) {
+                    throw new RevWalkException(e);
                 }
             }
-        } catch (GitAPIException | IOException e) {
+
+        };
+
+        return new CommitIterator(revWalk, source, skip_content);
+    }
+
+    @Override
+    public Iterator<Commit> iterateCommits(Collection<String> tips, Collection<String> uninterestingTips,
+            boolean skip_content) {
+        LOG.info("Extracting commits.");
+
+        RevWalk revWalk = new RevWalk(repository);
+        revWalk.setRetainBody(false);
+        openWalks.add(revWalk);
+
+        try {
+            for (String tip : tips) {
+                revWalk.markStart(revWalk.parseCommit(ObjectId.fromString(tip)));
+            }
+            for (String tip : uninterestingTips) {
+                revWalk.markUninteresting(revWalk.parseCommit(ObjectId.fromString(tip)));
+            }
+        } catch (IOException e) {
             close();
             throw new RepositoryMinerException(e);
         }
 
-        return commits;
+        sortParentsFirst(revWalk);
+        return new CommitIterator(revWalk, revWalk.iterator(), skip_content);
+    }
+
+    @Override
+    public List<String> getTips() {
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            List<String> tips = new ArrayList<String>();
+            for (RevCommit tip : getTipCommits(revWalk)) {
+                tips.add(tip.getName());
+            }
+            return tips;
+        } catch (IOException e) {
+            close();
+            throw new RepositoryMinerException(e);
+        }
+    }
+
+    @Override
+    public boolean isRewritten(Collection<String> tips) {
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            revWalk.setRetainBody(false);
+            try {
+                for (String tip : tips) {
+                    revWalk.markStart(revWalk.parseCommit(ObjectId.fromString(tip)));
+                }
+            } catch (MissingObjectException | IncorrectObjectTypeException e) {
+                return true;
+            }
+
+            for (RevCommit tip : getTipCommits(revWalk)) {
+                revWalk.markUninteresting(tip);
+            }
+
+            // only the commits lost since the tips were mined are walked
+            return revWalk.next() != null;
+        } catch (IOException e) {
+            close();
+            throw new RepositoryMinerException(e);
+        }
     }
 
     @Override
@@ -222,6 +372,171 @@ public class GitSCM implements ISCM {
         return names;
     }
 
+    @Override
+    public ReachabilityIndex getReachabilityIndex(List<Reference> references) {
+        LOG.info("Building the reachability index of the references.");
+
+        ReachabilityIndex index = new ReachabilityIndex();
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            revWalk.setRetainBody(false);
+            revWalk.sort(RevSort.TOPO);
+
+            // the references pointing to each commit, by position
+            Map<RevCommit, BitSet> pending = new HashMap<RevCommit, BitSet>();
+            for (int i = 0; i < references.size(); i++) {
+                Ref ref = repository.exactRef(references.get(i).getPath());
+                if (ref == null) {
+                    continue;
+                }
+
+                RevCommit tip = revWalk.parseCommit(ref.getObjectId());
+                pending.computeIfAbsent(tip, k -> new BitSet()).set(i);
+                revWalk.markStart(tip);
+            }
+
+            // children come before their parents, so the references of a commit
+            // are complete when it is reached.
+            List<RevCommit> revCommits = new ArrayList<RevCommit>();
+            for (RevCommit revCommit : revWalk) {
+                revCommits.add(revCommit);
+            }
+
+            int ordinal = revCommits.size();
+            for (RevCommit revCommit : revCommits) {
+                ordinal--;
+                index.putOrdinal(revCommit.getName(), ordinal);
+
+                BitSet refs = pending.remove(revCommit);
+                for (int i = refs.nextSetBit(0); i >= 0; i = refs.nextSetBit(i + 1)) {
+                    index.addOrdinal(references.get(i).getPath(), ordinal);
+                }
+
+                for (RevCommit parent : revCommit.getParents()) {
+                    pending.computeIfAbsent(parent, k -> new BitSet()).or(refs);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw new RepositoryMinerException(e);
+        }
+
+        index.finish();
+        return index;
+    }
+
+    @Override
+    public ReachabilityIndex updateReachabilityIndex(List<Reference> references, List<Reference> previous,
+            Collection<String> minedTips, int nextOrdinal,
+            Function<Collection<String>, Map<String, Integer>> storedOrdinals) {
+        LOG.info("Updating the reachability index of the references.");
+
+        Map<String, Reference> previousRefs = new HashMap<String, Reference>();
+        for (Reference ref : previous) {
+            previousRefs.put(ref.getPath(), ref);
+        }
+
+        ReachabilityIndex index = new ReachabilityIndex();
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            revWalk.setRetainBody(false);
+
+            // the new commits are numbered after the stored ones, parents first
+            for (RevCommit tip : getTipCommits(revWalk)) {
+                revWalk.markStart(tip);
+            }
+            for (String tip : minedTips) {
+                revWalk.markUninteresting(revWalk.parseCommit(ObjectId.fromString(tip)));
+            }
+            revWalk.sort(RevSort.TOPO);
+            revWalk.sort(RevSort.REVERSE, true);
+
+            int ordinal = nextOrdinal;
+            for (RevCommit revCommit : revWalk) {
+                index.putOrdinal(revCommit.getName(), ordinal++);
+            }
+
+            Map<String, List<int[]>> rangesByTip = new HashMap<String, List<int[]>>();
+            List<Reference> unresolved = new ArrayList<Reference>();
+            for (Reference ref : references) {
+                Reference previousRef = previousRefs.get(ref.getPath());
+                List<int[]> ranges = previousRef != null
+                        ? extendRanges(revWalk, previousRef, ref.getTip(), index, storedOrdinals)
+                        : null;
+                if (ranges == null) {
+                    unresolved.add(ref);
+                } else {
+                    index.putRanges(ref.getPath(), ranges);
+                    rangesByTip.putIfAbsent(ref.getTip(), ranges);
+                }
+            }
+
+            // new references are resolved only when they point to the tip of another one
+            for (Reference ref : unresolved) {
+                List<int[]> ranges = rangesByTip.get(ref.getTip());
+                if (ranges == null) {
+                    return null;
+                }
+                index.putRanges(ref.getPath(), ranges);
+            }
+        } catch (MissingObjectException | IncorrectObjectTypeException e) {
+            return null;
+        } catch (IOException e) {
+            close();
+            throw new RepositoryMinerException(e);
+        }
+
+        return index;
+    }
+
+    /*
+     * The commits of a reference moved forward are its previous ones plus the
+     * commits between both tips, which are either new or merged in from other
+     * references. A reference moved anywhere else can not be extended.
+     */
+    private List<int[]> extendRanges(RevWalk revWalk, Reference previous, String tip, ReachabilityIndex index,
+            Function<Collection<String>, Map<String, Integer>> storedOrdinals) throws IOException {
+        if (previous.getTip() == null || previous.getCommitRanges() == null || tip == null) {
+            return null;
+        }
+        if (previous.getTip().equals(tip)) {
+            return previous.getCommitRanges();
+        }
+
+        RevCommit oldTip = revWalk.parseCommit(ObjectId.fromString(previous.getTip()));
+        RevCommit newTip = revWalk.parseCommit(ObjectId.fromString(tip));
+
+        // the old tip is an ancestor of the new one when no commit is reachable
+        // from it alone, which walks only the commits left behind
+        revWalk.reset();
+        revWalk.sort(RevSort.NONE);
+        revWalk.markStart(oldTip);
+        revWalk.markUninteresting(newTip);
+        if (revWalk.next() != null) {
+            return null;
+        }
+
+        revWalk.reset();
+        revWalk.markStart(newTip);
+        revWalk.markUninteresting(oldTip);
+        List<Integer> ordinals = new ArrayList<Integer>();
+        List<String> storedCommits = new ArrayList<String>();
+        for (RevCommit revCommit : revWalk) {
+            Integer ordinal = index.getOrdinal(revCommit.getName());
+            if (ordinal != null) {
+                ordinals.add(ordinal);
+            } else {
+                storedCommits.add(revCommit.getName());
+            }
+        }
+
+        Map<String, Integer> stored = storedOrdinals.apply(storedCommits);
+        if (stored.size() < storedCommits.size()) {
+            return null;
+        }
+        ordinals.addAll(stored.values());
+        Collections.sort(ordinals);
+        return ReachabilityIndex.union(previous.getCommitRanges(), ordinals);
+    }
+
     @Override
     public List<String> getCommitsNames() {
         LOG.info(String.format("Extracting the commits names"));
@@ -240,20 +555,88 @@ public class GitSCM implements ISCM {
         return names;
     }
 
+    @Override
+    public ISnapshot getSnapshot(String point) {
+        return openSnapshot(point, TreeFilter.ALL);
+    }
+
+    @Override
+    public SnapshotMetrics getSnapshotMetrics(String point) {
+        LOG.info(String.format("Measuring the snapshot %s.", point));
+
+        try (GitSnapshot snapshot = openSnapshot(point, PathGlobFilter.create(config))) {
+            // the blobs are read by the analysis threads, after the caches are checked
+            Map<String, Future<AnalysisResult>> results = new LinkedHashMap<String, Future<AnalysisResult>>();
+            for (String path : snapshot.getFiles()) {
+                Language language = analyzers.getLanguage(path);
+                if (language != null) {
+                    results.put(path, submitAnalysis(language, snapshot.getBlobId(path), null));
+                }
+            }
+
+            SnapshotMetrics metrics = new SnapshotMetrics(snapshot.getCommit());
+            for (Map.Entry<String, Future<AnalysisResult>> result : results.entrySet()) {
+                try {
+                    metrics.add(result.getValue().get());
+                } catch (ExecutionException e) {
+                    metrics.addSkipped(result.getKey(), getSkipReason(e.getCause()));
+                }
+            }
+            if (metrics.getSkippedCount() > 0) {
+                LOG.warn(String.format("%d files of the snapshot %s were not measured.", metrics.getSkippedCount(),
+                        point));
+            }
+            return metrics;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryMinerException(e);
+        }
+    }
+
+    private GitSnapshot openSnapshot(String point, TreeFilter filter) {
+        try {
+            ObjectId commitId = repository.resolve(point);
+            if (commitId == null) {
+                throw new RepositoryMinerException("Snapshot " + point + " was not found.");
+            }
+            return new GitSnapshot(repository, commitId, filter);
+        } catch (RevisionSyntaxException | IOException e) {
+            throw new RepositoryMinerException("Error opening the snapshot " + point + ".", e);
+        }
+    }
+
+    @Override
+    public void createWorkingCopy(String path) {
+        LOG.info(String.format("Creating a working copy at %s.", path));
+        try (Git copy = Git.init().setDirectory(new File(path)).call()) {
+            // the objects are borrowed from this repository, nothing is copied
+            File alternates = new File(copy.getRepository().getDirectory(), "objects/info/alternates");
+            alternates.getParentFile().mkdirs();
+            FileUtils.writeStringToFile(alternates,
+                    new File(repository.getDirectory(), "objects").getAbsolutePath() + "\n", StandardCharsets.UTF_8);
+
+            // a detached HEAD at the current commit gives checkouts a starting point
+            RefUpdate headUpdate = copy.getRepository().updateRef(Constants.HEAD, true);
+            headUpdate.setNewObjectId(repository.resolve(Constants.HEAD));
+            headUpdate.forceUpdate();
+            copy.reset().setMode(ResetType.HARD).call();
+        } catch (GitAPIException | IOException e) {
+            throw new RepositoryMinerException("Error creating the working copy " + path + ".", e);
+        }
+    }
+
     @Override
     public void checkout(String hash) {
         LOG.info(String.format("Checking out %s.", hash));
-        File lockFile = new File(git.getRepository().getDirectory(), "git/index.lock");
+        File lockFile = new File(git.getRepository().getDirectory(), "index.lock");
         if (lockFile.exists()) {
             lockFile.delete();
         }
 
         try {
             git.reset().setMode(ResetType.HARD).call();
-            git.checkout().setName("master").call();
-
-            git.checkout().setCreateBranch(true).setName("rm_branch" + branchCounter++).setStartPoint(hash)
-                    .setForce(true).setOrphan(true).call();
+            // a detached HEAD leaves no branch behind
+            git.checkout().setName(hash).setForce(true).call();
         } catch (GitAPIException e) {
             close();
             throw new RepositoryMinerException(e);
@@ -263,11 +646,147 @@ public class GitSCM implements ISCM {
     @Override
     public void close() {
         LOG.info("Repository being closed.");
+        for (RevWalk revWalk : openWalks) {
+            revWalk.close();
+        }
+        openWalks.clear();
+
+        if (diffExecutor != null) {
+            diffExecutor.shutdownNow();
+            diffExecutor = null;
+        }
+        if (analysisExecutor != null) {
+            analysisExecutor.shutdownNow();
+            analysisExecutor = null;
+        }
+
+        synchronized (openSessions) {
+            for (GitSession session : openSessions) {
+                session.close();
+            }
+            openSessions.clear();
+        }
+
+        LOG.info(String.format("Analysis cache: %d hits, %d misses.", analysisCache.getHits(),
+                analysisCache.getMisses()));
+        if (persistentCache != null) {
+            LOG.info(String.format("Persistent analysis cache: %d hits, %d misses.", persistentCache.getHits(),
+                    persistentCache.getMisses()));
+            try {
+                persistentCache.close();
+            } catch (IOException e) {
+                LOG.error("Error closing the persistent analysis cache.", e);
+            }
+            persistentCache = null;
+        }
         git.getRepository().close();
         git.close();
     }
 
+    private GitSession openSession() {
+        GitSession session = new GitSession(repository, config);
+        synchronized (openSessions) {
+            openSessions.add(session);
+        }
+        return session;
+    }
+
+    /*
+     * Orders the selected commits parents first. Only the parents among the
+     * selected commits matter, the totals of the others are read from the
+     * stored commits, so the history out of the selection is not walked.
+     */
+    private Iterator<RevCommit> selectParentsFirst(RevWalk revWalk, Set<String> selectedCommits) {
+        Map<ObjectId, RevCommit> selected = new LinkedHashMap<ObjectId, RevCommit>();
+        try {
+            for (String hash : selectedCommits) {
+                RevCommit revCommit = revWalk.parseCommit(ObjectId.fromString(hash));
+                selected.put(revCommit, revCommit);
+            }
+        } catch (IOException e) {
+            close();
+            throw new RepositoryMinerException(e);
+        }
+
+        List<RevCommit> ordered = new ArrayList<RevCommit>();
+        Set<RevCommit> visited = new HashSet<RevCommit>();
+        Deque<RevCommit> stack = new ArrayDeque<RevCommit>();
+        for (RevCommit start : selected.values()) {
+            if (visited.add(start)) {
+                stack.push(start);
+            }
+
+            // a commit is emitted once all its selected parents were emitted
+            while (!stack.isEmpty()) {
+                RevCommit revCommit = stack.peek();
+                RevCommit pending = null;
+                for (RevCommit parent : revCommit.getParents()) {
+                    RevCommit selectedParent = selected.get(parent);
+                    if (selectedParent != null && visited.add(selectedParent)) {
+                        pending = selectedParent;
+                        break;
+                    }
+                }
+
+                if (pending != null) {
+                    stack.push(pending);
+                } else {
+                    ordered.add(stack.pop());
+                }
+            }
+        }
+        return ordered.iterator();
+    }
+
+    /*
+     * The project totals of a commit are computed from the totals of its parent.
+     */
+    private void sortParentsFirst(RevWalk revWalk) {
+        if (config.isProjectTotals()) {
+            revWalk.sort(RevSort.TOPO);
+            revWalk.sort(RevSort.REVERSE, true);
+        }
+    }
+
+    private void markStartFromAllRefs(RevWalk revWalk) throws IOException {
+        for (RevCommit tip : getTipCommits(revWalk)) {
+            revWalk.markStart(tip);
+        }
+    }
+
+    private Set<RevCommit> getTipCommits(RevWalk revWalk) throws IOException {
+        Set<RevCommit> tips = new LinkedHashSet<RevCommit>();
+        for (Ref ref : repository.getRefDatabase().getRefs(RefDatabase.ALL).values()) {
+            ObjectId objectId = repository.peel(ref).getPeeledObjectId();
+            if (objectId == null) {
+                objectId = ref.getObjectId();
+            }
+
+            if (objectId == null) {
+                continue;
+            }
+
+            try {
+                tips.add(revWalk.parseCommit(objectId));
+            } catch (MissingObjectException | IncorrectObjectTypeException e) {
+                // references that do not point to commits are not walked
+            }
+        }
+        return tips;
+    }
+
     private Commit processCommit(RevCommit revCommit, boolean skip_content) {
+        Commit commit = processCommitHeader(revCommit);
+        try {
+            commit.setChanges(extractChanges(commit.getHash(), skip_content));
+        } catch (RepositoryMinerException e) {
+            close();
+            throw e;
+        }
+        return commit;
+    }
+
+    private Commit processCommitHeader(RevCommit revCommit) {
         PersonIdent author = revCommit.getAuthorIdent();
         PersonIdent committer = revCommit.getCommitterIdent();
 
@@ -279,188 +798,322 @@ public class GitSCM implements ISCM {
             parents.add(parent.getName());
         }
 
-        List<Change> changes = null;
+        return new Commit(null, revCommit.getName(), myAuthor, myCommitter, revCommit.getFullMessage().trim(), null,
+                parents, author.getWhen(), committer.getWhen(), (parents.size() > 1), null);
+    }
+
+    private List<Change> extractChanges(String hash, boolean skip_content) {
         try {
-            changes = getChangesForCommitedFiles(revCommit.getName(), skip_content);
-        } catch (IOException | UnsupportedLanguageException | UnsupportedMetricException | SQLException |
-                 ClassNotFoundException e) {
-            close();
+            return getChangesForCommitedFiles(hash, skip_content);
+        } catch (IOException e) {
             throw new RepositoryMinerException(e);
         }
+    }
 
-        return new Commit(null, revCommit.getName(), myAuthor, myCommitter, revCommit.getFullMessage().trim(), changes,
-                parents, author.getWhen(), committer.getWhen(), (parents.size() > 1), null);
+    /*
+     * Schedules the extraction of the changes of a commit in the diff pool. When
+     * there is no pool, the task runs when the commit is consumed.
+     */
+    private FutureTask<Commit> submitChanges(Commit commit, boolean skip_content) {
+        FutureTask<Commit> task = new FutureTask<Commit>(() -> {
+            commit.setChanges(extractChanges(commit.getHash(), skip_content));
+            return commit;
+        });
+
+        if (diffExecutor != null) {
+            diffExecutor.execute(task);
+        }
+        return task;
     }
 
-    private List<Change> getChangesForCommitedFiles(String hash, boolean skip_content) throws IOException, UnsupportedLanguageException, UnsupportedMetricException, SQLException, ClassNotFoundException {
-        RevWalk revWalk = new RevWalk(git.getRepository());
-        RevCommit commit = revWalk.parseCommit(ObjectId.fromString(hash));
+    private List<Change> getChangesForCommitedFiles(String hash, boolean skip_content) throws IOException {
+        GitSession session = sessions.get();
+        RevWalk revWalk = session.getRevWalk();
+        try {
+            return getChangesForCommitedFiles(session, revWalk.parseCommit(ObjectId.fromString(hash)), skip_content);
+        } finally {
+            // the session outlives the commit, so the parsed objects are released
+            revWalk.dispose();
+        }
+    }
 
+    private List<Change> getChangesForCommitedFiles(GitSession session, RevCommit commit, boolean skip_content) throws IOException {
         if (commit.getParentCount() > 1) {
-            revWalk.close();
             return new ArrayList<Change>();
         }
+        return getChangesFromFirstParent(session, commit, skip_content);
+    }
 
+    @Override
+    public List<Change> getFirstParentChanges(String hash) {
+        GitSession session = sessions.get();
+        RevWalk revWalk = session.getRevWalk();
+        try {
+            return getChangesFromFirstParent(session, revWalk.parseCommit(ObjectId.fromString(hash)), true);
+        } catch (IOException e) {
+            throw new RepositoryMinerException(e);
+        } finally {
+            revWalk.dispose();
+        }
+    }
+
+    private List<Change> getChangesFromFirstParent(GitSession session, RevCommit commit, boolean skip_content)
+            throws IOException {
         RevCommit parentCommit = commit.getParentCount() > 0
-                ? revWalk.parseCommit(ObjectId.fromString(commit.getParent(0).getName()))
+                ? session.getRevWalk().parseCommit(commit.getParent(0))
                 : null;
 
-        DiffFormatter df = new DiffFormatter(DisabledOutputStream.INSTANCE);
-        df.setBinaryFileThreshold(2048);
-        df.setRepository(git.getRepository());
-        df.setDiffComparator(RawTextComparator.DEFAULT);
-        df.setDetectRenames(true);
+        List<DiffEntry> diffEntries = scanChanges(session, parentCommit, commit);
 
-        List<DiffEntry> diffEntries = df.scan(parentCommit, commit);
-        df.close();
-        revWalk.close();
+        // The blobs are loaded in this thread, while their analysis may run in the
+        // analysis pool. The changes are then collected in the diff order.
+        List<PendingChange> pendingChanges = new ArrayList<PendingChange>();
+        for (DiffEntry entry : diffEntries) {
+            try {
+                pendingChanges.add(loadChange(session, entry, skip_content));
+            } catch (Exception e) {
+                // the change is kept without content nor metrics
+                PendingChange pending = new PendingChange(entry);
+                pending.skipReason = "blobs could not be read: " + e;
+                pendingChanges.add(pending);
+            }
+        }
 
         List<Change> changes = new ArrayList<Change>();
-        for (DiffEntry entry : diffEntries) {
-            String content = "";
-            String contentBefore = "";
+        for (PendingChange pending : pendingChanges) {
+            DiffEntry entry = pending.entry;
+            String content = pending.content;
+            String contentBefore = pending.contentBefore;
+
+            // each version keeps its metrics when the other one is skipped, the
+            // reason tells which one was
+            String skipReason = pending.skipReason;
+            AnalysisResult result = null, resultBefore = null;
+            try {
+                result = getResult(pending.result);
+            } catch (ExecutionException e) {
+                skipReason = addSkipReason(skipReason, "new version: " + getSkipReason(e.getCause()));
+            }
+            try {
+                resultBefore = getResult(pending.resultBefore);
+            } catch (ExecutionException e) {
+                skipReason = addSkipReason(skipReason, "old version: " + getSkipReason(e.getCause()));
+            }
 
+            Change change = new Change(entry.getNewPath(), entry.getOldPath(), 0, 0,
+                    ChangeType.valueOf(entry.getChangeType().name()),
+                    content, contentBefore,
+                    result != null ? result.getLoc() : 0, resultBefore != null ? resultBefore.getLoc() : 0,
+                    result != null ? result.getCyclo() : 0, resultBefore != null ? resultBefore.getCyclo() : 0,
+                    result != null ? result.getPackages() : new ArrayList<Package>(),
+                    resultBefore != null ? resultBefore.getPackages() : new ArrayList<Package>());
 
-            int loc = 0, cyclo = 0;
-            int locBefore = 0, cycloBefore = 0;
-            List<Package> packages = new ArrayList<>();
-            List<Package> packagesBefore = new ArrayList<>();
             try {
-                if (entry.getNewPath() != DiffEntry.DEV_NULL) {
-                    content = getCommitContent(commit, entry.getNewPath());
-                    String filename = getFilename(entry.getNewPath(), entry.getOldPath());
-                    String extension = FilenameUtils.getExtension(filename);
-                    if (extension.equals(language)) {
-                        ImmutablePair<List<MetricPackage>, List<MetricPackage>> pair;
-                        pair = executeAnalyzer(content, Language.JAVA);
-
-                        List<MetricPackage> locMetricResult = pair.getLeft();
-                        List<Package> packagesForLoc = packageMapper.convert(locMetricResult);
-                        ArrayList<Method> locMethods = getMetricNumberByMethods(locMetricResult, MetricEnum.LOC);
-                        for (Method method : locMethods) {
-                            loc += method.getLoc();
-                        }
-
-                        List<MetricPackage> cycloMetricResult = pair.getRight();
-                        List<Package> packagesForCyclo = packageMapper.convert(cycloMetricResult);
-
-                        packages = mergeMethods(packagesForLoc, packagesForCyclo);
-
-                        ArrayList<Method> cycloMethods = getMetricNumberByMethods(cycloMetricResult, MetricEnum.CYCLO);
-                        for (Method method : cycloMethods) {
-                            cyclo += method.getComplexity();
-                        }
-                    }
-                }
+                analyzeDiff(session, change, entry);
+            } catch (Exception e) {
+                skipReason = addSkipReason(skipReason, "diff failed: " + e);
+            }
 
-                if (entry.getOldPath() != DiffEntry.DEV_NULL) {
-                    contentBefore = getCommitContent(parentCommit, entry.getOldPath());
-                    String filename = getFilename(entry.getNewPath(), entry.getOldPath());
-                    String extension = FilenameUtils.getExtension(filename);
-                    if (extension.equals(language)) {
-                        ImmutablePair<List<MetricPackage>, List<MetricPackage>> pairBefore;
-                        pairBefore = executeAnalyzer(contentBefore, Language.JAVA);
-                        List<MetricPackage> locMetricResult = pairBefore.getLeft();
-                        List<Package> packagesForLoc = packageMapper.convert(locMetricResult);
-                        locBefore = getMetricNumber(locMetricResult, MetricEnum.LOC);
-
-                        List<MetricPackage> cycloMetricResult = pairBefore.getRight();
-                        List<Package> packagesForCyclo = packageMapper.convert(cycloMetricResult);
-                        cycloBefore = getMetricNumber(cycloMetricResult, MetricEnum.CYCLO);
-
-                        packagesBefore = mergeMethods(packagesForLoc, packagesForCyclo);
-                    }
-                }
+            if (skipReason != null) {
+                LOG.warn(String.format("Change of %s in commit %s: %s", getPath(entry), commit.getName(),
+                        skipReason));
+            }
+            change.setSkipReason(skipReason);
+            changes.add(change);
+        }
 
-                if(skip_content){
-                    content = "";
-                    contentBefore = "";
-                }
+        return changes;
+    }
 
-                Change change = new Change(entry.getNewPath(), entry.getOldPath(), 0, 0,
-                        ChangeType.valueOf(entry.getChangeType().name()),
-                        content, contentBefore,
-                        loc, locBefore,
-                        cyclo, cycloBefore, packages, packagesBefore);
+    private List<DiffEntry> scanChanges(GitSession session, RevCommit parentCommit, RevCommit commit)
+            throws IOException {
+        List<DiffEntry> entries = session.getDiffFormatter().scan(parentCommit, commit);
+
+        boolean added = false, deleted = false;
+        for (DiffEntry entry : entries) {
+            added |= entry.getChangeType() == DiffEntry.ChangeType.ADD;
+            deleted |= entry.getChangeType() == DiffEntry.ChangeType.DELETE;
+        }
+        if (!added || !deleted) {
+            return entries;
+        }
+
+        // files renamed in a commit seen before are paired without scoring them,
+        // and identical files are paired by their ids before any similarity is
+        // scored
+        entries = new ArrayList<DiffEntry>(entries);
+        List<DiffEntry> known = renameCache.pair(entries);
+        RenameDetector detector = session.newRenameDetector();
+        detector.addAll(entries);
+        List<DiffEntry> renamed = detector.compute();
+        if (detector.isOverRenameLimit()) {
+            LOG.warn(String.format("Commit %s exceeds the rename limit of %d files, only identical files were "
+                    + "detected as renames.", commit.getName(), detector.getRenameLimit()));
+        }
+        renameCache.put(renamed);
 
-                analyzeDiff(change, entry);
-                changes.add(change);
-            } catch (Exception e){
-                // This try catch continue with the process
+        if (known.isEmpty()) {
+            return renamed;
+        }
+        renamed = new ArrayList<DiffEntry>(renamed);
+        renamed.addAll(known);
+        renamed.sort(Comparator.comparing(entry -> entry.getChangeType() == DiffEntry.ChangeType.DELETE
+                ? entry.getOldPath()
+                : entry.getNewPath()));
+        return renamed;
+    }
+
+    private PendingChange loadChange(GitSession session, DiffEntry entry, boolean skip_content) throws IOException {
+        PendingChange pending = new PendingChange(entry);
+        if (skip_content && config.isStatsOnly()) {
+            return pending;
+        }
+
+        Language language = analyzers.getLanguage(getFilename(entry.getNewPath(), entry.getOldPath()));
+
+        // Without content, the blobs are only read by the analysis and only when
+        // their result is not cached.
+        if (entry.getNewPath() != DiffEntry.DEV_NULL) {
+            ObjectId blobId = entry.getNewId().toObjectId();
+            if (!skip_content) {
+                pending.content = getBlobContent(session, blobId);
             }
+            if (language != null) {
+                pending.result = submitAnalysis(language, blobId, skip_content ? null : pending.content);
+            }
+        }
 
+        if (entry.getOldPath() != DiffEntry.DEV_NULL) {
+            ObjectId blobId = entry.getOldId().toObjectId();
+            if (!skip_content) {
+                pending.contentBefore = getBlobContent(session, blobId);
+            }
+            if (language != null) {
+                pending.resultBefore = submitAnalysis(language, blobId,
+                        skip_content ? null : pending.contentBefore);
+            }
         }
 
-        return changes;
+        return pending;
     }
 
-    private List<Package> mergeMethods(List<Package> packagesForLoc, List<Package> packagesForCyclo){
-        return packagesForLoc.stream().map((packageA -> {
-                    Package packageMatched = packagesForCyclo.stream().filter(packageB -> packageB.getName().equals(packageA.getName())).findFirst().orElse(null);
-
-                    packageA.getClasses().stream().map((classA -> {
-                        Class classMatched = packageMatched.getClasses().stream().filter(classB -> classB.getName().equals(classA.getName())).findFirst().orElse(null);
-
-                        classA.getMethods().stream().map((methodA -> {
-                                    Method methodMatched = classMatched.getMethods().stream().filter(methodB -> methodB.getName().equals(methodA.getName())).findFirst().orElse(null);
-                                    methodA.setLoc(Math.max(methodA.getLoc(), methodMatched.getLoc()));
-                                    methodA.setComplexity(Math.max(methodA.getComplexity(), methodMatched.getComplexity()));
-                                    return methodA;
-                                }))
-                                .collect(Collectors.toList());
-                        return classA;
-                    })).collect(Collectors.toList());
-                    return packageA;
-                }))
-                .collect(Collectors.toList());
-    }
-
-    private int getMetricNumber(List<MetricPackage> metricResult, MetricEnum metricType) {
-        int metricAcum = 0;
-        for (MetricPackage p : metricResult) {
-            for (MetricClass c : p.getPackageClasses()) {
-                for (MetricMethod m : c.getMethods()) {
-                    switch (metricType) {
-                        case LOC:
-                            metricAcum += m.getLOC();
-                            break;
-                        case CYCLO:
-                            metricAcum += m.getCYCLO();
-                            break;
-                        default:
-                            metricAcum += 0;
-                            break;
-                    }
-                }
+    private static AnalysisResult getResult(Future<AnalysisResult> result) throws ExecutionException {
+        if (result == null) {
+            return null;
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryMinerException(e);
+        }
+    }
+
+    private static String addSkipReason(String skipReason, String reason) {
+        return skipReason == null ? reason : skipReason + "; " + reason;
+    }
+
+    /*
+     * A null source code is read from the blob by the thread running the
+     * analysis, after the caches are checked.
+     */
+    private Future<AnalysisResult> submitAnalysis(Language language, ObjectId blobId, String sourceCode) {
+        FutureTask<AnalysisResult> task = new FutureTask<AnalysisResult>(() -> analyze(language, blobId,
+                sourceCode));
+        if (analysisExecutor != null) {
+            analysisExecutor.execute(task);
+        } else {
+            task.run();
+        }
+        return task;
+    }
+
+    private AnalysisResult analyze(Language language, ObjectId blobId, String sourceCode) throws Exception {
+        AnalysisResult result = analysisCache.get(blobId);
+        if (result != null) {
+            return result;
+        }
+
+        if (persistentCache != null) {
+            result = persistentCache.get(blobId);
+            if (result != null) {
+                analysisCache.put(blobId, result);
+                return result;
             }
         }
-        return metricAcum;
+
+        // a blob skipped before is skipped again for the same reason
+        String skipReason = analysisCache.getSkipReason(blobId);
+        if (skipReason != null) {
+            throw new FileLimitException(skipReason);
+        }
+
+        // only the skips given by the content are cached, a timeout depends on the
+        // load and the blob is analyzed again next time
+        try {
+            result = analyzeWithinLimits(language, blobId, sourceCode);
+        } catch (TimeoutException e) {
+            throw new FileLimitException(String.format("analysis exceeded the limit of %d ms",
+                    config.getAnalysisTimeout()));
+        } catch (InterruptedException | IOException e) {
+            throw e;
+        } catch (Exception e) {
+            analysisCache.putSkipReason(blobId, getSkipReason(e));
+            throw e;
+        }
+
+        analysisCache.put(blobId, result);
+        if (persistentCache != null) {
+            persistentCache.put(blobId, result);
+        }
+        return result;
     }
 
-    private ArrayList<Method> getMetricNumberByMethods(List<MetricPackage> metricResult, MetricEnum metricType) {
+    private AnalysisResult analyzeWithinLimits(Language language, ObjectId blobId, String sourceCode)
+            throws Exception {
+        if (config.getMaxFileBytes() > 0) {
+            long size = sessions.get().getBlobSize(blobId);
+            if (size > config.getMaxFileBytes()) {
+                throw new FileLimitException(String.format("%d bytes exceed the limit of %d bytes", size,
+                        config.getMaxFileBytes()));
+            }
+        }
 
-        ArrayList<Method> methods = new ArrayList<>();
+        if (sourceCode == null) {
+            sourceCode = getBlobContent(sessions.get(), blobId);
+        }
 
-        for (MetricPackage p : metricResult) {
-            for (MetricClass c : p.getPackageClasses()) {
-                for (MetricMethod m : c.getMethods()) {
-                    Method method = new Method();
-                    method.setName(m.getMethodName());
-                    switch (metricType) {
-                        case LOC:
-                            method.setLoc(m.getLOC());
-                            break;
-                        case CYCLO:
-                            method.setComplexity(m.getCYCLO());
-                            break;
-                        default:
-                            break;
-                    }
-                    methods.add(method);
-                }
+        if (config.getMaxFileLines() > 0) {
+            int lines = countLines(sourceCode);
+            if (lines > config.getMaxFileLines()) {
+                throw new FileLimitException(String.format("%d lines exceed the limit of %d lines", lines,
+                        config.getMaxFileLines()));
+            }
+        }
+
+        return analyzers.analyze(language, sourceCode, config.getAnalysisTimeout());
+    }
+
+    private static int countLines(String sourceCode) {
+        int lines = 0;
+        for (int i = 0; i < sourceCode.length(); i++) {
+            if (sourceCode.charAt(i) == '\n') {
+                lines++;
             }
         }
-        return methods;
+        // the last line may have no line break
+        return sourceCode.isEmpty() || sourceCode.endsWith("\n") ? lines : lines + 1;
+    }
+
+    private static String getSkipReason(Throwable cause) {
+        if (cause instanceof FileLimitException) {
+            return cause.getMessage();
+        }
+        return "analysis failed: " + (cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName());
+    }
+
+    private static String getPath(DiffEntry entry) {
+        return entry.getChangeType() == DiffEntry.ChangeType.DELETE ? entry.getOldPath() : entry.getNewPath();
     }
 
     private String getFilename(String newPath, String oldPath) {
@@ -474,43 +1127,62 @@ public class GitSCM implements ISCM {
         return FilenameUtils.getName(path);
     }
 
-    private String getCommitContent(RevCommit commit, String path) throws IOException {
-        try (TreeWalk treeWalk = TreeWalk.forPath(git.getRepository(), path, commit.getTree())) {
-            ObjectId blobId = treeWalk.getObjectId(0);
-            try (ObjectReader objectReader = git.getRepository().newObjectReader()) {
-                ObjectLoader objectLoader = objectReader.open(blobId);
-                byte[] bytes = objectLoader.getBytes();
-                return new String(bytes, StandardCharsets.UTF_8);
-            }
-        }
+    private String getBlobContent(GitSession session, ObjectId blobId) throws IOException {
+        return new String(session.getBlob(blobId), StandardCharsets.UTF_8);
     }
 
-    private void analyzeDiff(Change change, DiffEntry diff) throws IOException {
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        DiffFormatter df = new DiffFormatter(output);
-
-        df.setRepository(git.getRepository());
-        df.format(diff);
+    private void analyzeDiff(GitSession session, Change change, DiffEntry diff) throws IOException {
+        EditList edits = session.getEdits(diff);
+        int added = 0, removed = 0;
+        for (Edit edit : edits) {
+            added += edit.getLengthB();
+            removed += edit.getLengthA();
+        }
+        change.setLinesAdded(added);
+        change.setLinesRemoved(removed);
+        if (!config.isTouchedMethods()) {
+            return;
+        }
 
-        Scanner scanner = new Scanner(output.toString("UTF-8"));
-        int added = 0;
-        int removed = 0;
+        // A method is touched when a hunk overlaps its span in either version,
+        // which also catches the methods added or removed by the change. The
+        // spans come from the whole-file analysis, nothing is measured again.
+        Set<String> touched = new LinkedHashSet<String>();
+        addTouchedMethods(touched, change.getPackagesBefore(), edits, false);
+        addTouchedMethods(touched, change.getPackages(), edits, true);
+        change.setTouchedMethods(new ArrayList<String>(touched));
+    }
 
-        while (scanner.hasNextLine()) {
-            String line = scanner.nextLine();
-            if (line.startsWith("+") && !line.startsWith("+++")) {
-                added++;
-            } else if (line.startsWith("-") && !line.startsWith("---")) {
-                removed++;
+    private void addTouchedMethods(Set<String> touched, List<Package> packages, EditList edits,
+                                   boolean newVersion) {
+        for (Package p : packages) {
+            String prefix = p.getName() == null || p.getName().isEmpty() ? "" : p.getName() + ".";
+            for (Class c : p.getClasses() != null ? p.getClasses() : new ArrayList<Class>()) {
+                for (Method m : c.getMethods() != null ? c.getMethods() : new ArrayList<Method>()) {
+                    if (m.getStartLine() > 0 && isTouched(m, edits, newVersion)) {
+                        touched.add(prefix + c.getName() + "." + m.getName());
+                    }
+                }
             }
         }
+    }
 
-        output.close();
-        df.close();
-        scanner.close();
-
-        change.setLinesAdded(added);
-        change.setLinesRemoved(removed);
+    /*
+     * Edit ranges are zero based and end exclusive, method spans are one based
+     * and end inclusive. An empty range marks lines inserted or deleted between
+     * two lines, which touches a method only inside its span.
+     */
+    private boolean isTouched(Method method, EditList edits, boolean newVersion) {
+        int start = method.getStartLine() - 1;
+        int end = method.getEndLine();
+        for (Edit edit : edits) {
+            int begin = newVersion ? edit.getBeginB() : edit.getBeginA();
+            int finish = newVersion ? edit.getEndB() : edit.getEndA();
+            if (begin == finish ? start < begin && begin < end : begin < end && start < finish) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private Iterable<RevCommit> getCommitsFromTag(String refName) {
@@ -543,88 +1215,97 @@ public class GitSCM implements ISCM {
         }
     }
 
-    private ImmutablePair<List<MetricPackage>, List<MetricPackage>> executeAnalyzer(String sourceCode, Language language) throws UnsupportedMetricException, IOException, UnsupportedLanguageException, SQLException, ClassNotFoundException {
-        //START Repeated
-        ArrayList<OutputMapperObject> CUGast = new ArrayList<>();
-        //Process a single file
-        OutputMapperObject fileCU = readFromSpecificLanguage(sourceCode, language);
-        //Add the file
-        CUGast.add(fileCU);
-
-        ArrayList<ArrayList<ArrayList<String>>> pathsJSON = new ArrayList<ArrayList<ArrayList<String>>>();
-        ArrayList<ArrayList<ArrayList<CompilationUnit>>> gastObjects = new ArrayList<ArrayList<ArrayList<CompilationUnit>>>();
+    /**
+     * Walks the history on demand. The walk runs ahead of the consumer by a
+     * bounded number of commits, whose changes are extracted in the diff pool
+     * meanwhile. Only the commits in this window are held in memory.
+     */
+    private class CommitIterator implements Iterator<Commit> {
+
+        private RevWalk revWalk;
+        private Iterator<RevCommit> source;
+        private boolean skipContent;
+        private Deque<FutureTask<Commit>> window = new ArrayDeque<FutureTask<Commit>>();
+        private boolean exhausted = false;
+
+        private CommitIterator(RevWalk revWalk, Iterator<RevCommit> source, boolean skipContent) {
+            this.revWalk = revWalk;
+            this.source = source;
+            this.skipContent = skipContent;
+            fill();
+        }
 
-        ArrayList<ArrayList<String>> jsonAux = new ArrayList<ArrayList<String>>();
-        ArrayList<ArrayList<CompilationUnit>> gastAux = new ArrayList<ArrayList<CompilationUnit>>();
-        for (OutputMapperObject theOutputObject : CUGast) {
-            jsonAux.add(theOutputObject.gastAsJson);
-            gastAux.add(theOutputObject.gastAsObject);
+        @Override
+        public boolean hasNext() {
+            return !window.isEmpty();
         }
 
-        pathsJSON.add(jsonAux);
-        gastObjects.add(gastAux);
-        //END Repeated
-        List<MetricPackage> locMetricResult = getMetricResult(MetricEnum.LOC.toString(), language, pathsJSON, gastObjects);
-        List<MetricPackage> cycloMetricResult = getMetricResult(MetricEnum.CYCLO.toString(), language, pathsJSON, gastObjects);
+        @Override
+        public Commit next() {
+            if (window.isEmpty()) {
+                throw new NoSuchElementException();
+            }
 
-        return new ImmutablePair<>(locMetricResult, cycloMetricResult);
-    }
+            FutureTask<Commit> head = window.poll();
+            fill();
 
-    private ArrayList<MetricPackage> getMetricResult(String metric, Language language, ArrayList<ArrayList<ArrayList<String>>> pathsJSON, ArrayList<ArrayList<ArrayList<CompilationUnit>>> gastObjects) throws UnsupportedMetricException, SQLException, ClassNotFoundException {
-        MetricFactory metricFactory = new MetricFactory();
-        //Get the metric from JSON.
-        MetricEnum newMetricEnum = MetricEnum.getMetricFromString(metric);
-        //Get the Metric from the Factory.
-        AbstractMetric specificMetric = metricFactory.createMetric(newMetricEnum);
-        //Each mapper knows how to process the inputParameters
-        JSONArray inputParameters = new JSONArray();
-        AbstractInput input = specificMetric.createSpecificInput(inputParameters);
+            try {
+                // runs the task here if no diff worker has picked it yet
+                head.run();
+                return head.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new RepositoryMinerException(e);
+            } catch (ExecutionException e) {
+                close();
+                throw new RepositoryMinerException(e.getCause());
+            }
+        }
 
+        private void fill() {
+            try {
+                while (!exhausted && window.size() < config.getCommitQueueSize()) {
+                    if (!source.hasNext()) {
+                        exhausted = true;
+                        revWalk.close();
+                        openWalks.remove(revWalk);
+                        break;
+                    }
 
-        input.gastJsonInputs = pathsJSON;
-        input.gastObjects = gastObjects;
-        input.language = language;
+                    RevCommit revCommit = source.next();
 
-        specificMetric.start(input);
-        Output output = specificMetric.exportOutput();
-        //Get the output as a file.
-        return output.getMetricResult();
-    }
+                    LOG.info(String.format("Analyzing commit %s.", revCommit.getName()));
+                    revWalk.parseBody(revCommit);
+                    Commit commit = processCommitHeader(revCommit);
+                    revCommit.disposeBody();
 
-    private OutputMapperObject readFromSpecificLanguage(String sourceCode, Language language) throws UnsupportedLanguageException, IOException {
-        ArrayList<String> fileCUGast = new ArrayList<>();
-        // Instance the mapper factory.
-        MapperFactory factory = new MapperFactory();
+                    window.add(submitChanges(commit, skipContent));
+                }
+            } catch (IOException | RevWalkException e) {
+                close();
+                throw new RepositoryMinerException(e);
+            }
+        }
 
-        // Build the Java mapper.
-        Mapper mapper = factory.createMapper(language);
-        // Parse the file and obtain the GAST.
-        ArrayList<CompilationUnit> compilationUnits;
+    }
 
-        // Return the GAST from a file content.
-        compilationUnits = mapper.getGastCompilationUnitInMemory(sourceCode);
+    /**
+     * A change whose blobs were loaded and whose analysis may still be running.
+     */
+    private static class PendingChange {
 
-        // Add the results in the parsed file list.
-        for (CompilationUnit compilationUnit : compilationUnits) {
-            // Transform the compilation unit into its JSON representation.
-            Gson gson = new Gson();
-            String jsonRepresentation = gson.toJson(compilationUnit);
+        private DiffEntry entry;
+        private String content = "";
+        private String contentBefore = "";
+        private Future<AnalysisResult> result;
+        private Future<AnalysisResult> resultBefore;
+        private String skipReason;
 
-            // Remove the "null"'s values into a empty string.
-            jsonRepresentation = jsonRepresentation.replaceAll("null", "");
-            //Add the JSON
-            fileCUGast.add(jsonRepresentation);
+        private PendingChange(DiffEntry entry) {
+            this.entry = entry;
         }
-        OutputMapperObject newOutput = new OutputMapperObject();
-        newOutput.gastAsObject = compilationUnits;
-        newOutput.gastAsJson = fileCUGast;
-        return newOutput;
+
     }
 
 }
-
-class OutputMapperObject {
-    public ArrayList<String> gastAsJson;
-    public ArrayList<CompilationUnit> gastAsObject;
-
-}
\ No newline at end of file
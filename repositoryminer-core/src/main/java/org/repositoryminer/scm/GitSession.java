@@ -0,0 +1,126 @@
+package org.repositoryminer.scm;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffConfig;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+
+/**
+ * Holds the JGit objects used to extract the changes of commits, so that they
+ * and the inflater and window caches of their reader are reused across the
+ * commits of a mining session. A session must be used by a single thread.
+ */
+class GitSession implements AutoCloseable {
+
+	private ObjectReader reader;
+	private RevWalk revWalk;
+	private DiffFormatter diffFormatter;
+	private DiffFormatter statsFormatter;
+	private DiffConfig diffConfig;
+	private SCMConfig config;
+
+	GitSession(Repository repository, SCMConfig config) {
+		this.config = config;
+		reader = repository.newObjectReader();
+		diffConfig = repository.getConfig().get(DiffConfig.KEY);
+		revWalk = new RevWalk(reader);
+
+		diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
+		diffFormatter.setBinaryFileThreshold(2048);
+		diffFormatter.setReader(reader, repository.getConfig());
+		diffFormatter.setDiffComparator(RawTextComparator.DEFAULT);
+		diffFormatter.setPathFilter(PathGlobFilter.create(config));
+
+		statsFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
+		statsFormatter.setReader(reader, repository.getConfig());
+		if (config.getDiffAlgorithm() != null) {
+			statsFormatter.setDiffAlgorithm(DiffAlgorithm.getAlgorithm(config.getDiffAlgorithm()));
+		}
+	}
+
+	/**
+	 * @return the walk used to parse commits, which must be disposed after each
+	 *         commit.
+	 */
+	RevWalk getRevWalk() {
+		return revWalk;
+	}
+
+	/**
+	 * @return the formatter used to scan the differences between trees.
+	 */
+	DiffFormatter getDiffFormatter() {
+		return diffFormatter;
+	}
+
+	/**
+	 * Creates a detector of the renames among the changes of a commit. A new
+	 * detector is needed for each commit, since JGit never clears the rename
+	 * limit flag of a detector.
+	 * 
+	 * @return the rename detector.
+	 */
+	RenameDetector newRenameDetector() {
+		RenameDetector detector = new RenameDetector(reader, diffConfig);
+		detector.setRenameScore(config.getRenameScore());
+		if (config.getRenameLimit() != null) {
+			detector.setRenameLimit(config.getRenameLimit());
+		}
+		return detector;
+	}
+
+	/**
+	 * Computes the edits between both versions of a changed file, whose ranges
+	 * give the lines added and removed. Binary files have no edits.
+	 * 
+	 * @param entry
+	 *            the change.
+	 * @return the edits of the change.
+	 * @throws IOException
+	 */
+	EditList getEdits(DiffEntry entry) throws IOException {
+		return statsFormatter.toFileHeader(entry).toEditList();
+	}
+
+	/**
+	 * Loads the raw content of a blob.
+	 * 
+	 * @param blobId
+	 *            the blob id.
+	 * @return the blob content.
+	 * @throws IOException
+	 */
+	byte[] getBlob(ObjectId blobId) throws IOException {
+		return reader.open(blobId, Constants.OBJ_BLOB).getBytes();
+	}
+
+	/**
+	 * @param blobId
+	 *            the blob id.
+	 * @return the size of the blob in bytes, without loading its content.
+	 * @throws IOException
+	 */
+	long getBlobSize(ObjectId blobId) throws IOException {
+		return reader.getObjectSize(blobId, Constants.OBJ_BLOB);
+	}
+
+	@Override
+	public void close() {
+		diffFormatter.close();
+		statsFormatter.close();
+		revWalk.close();
+		reader.close();
+	}
+
+}
@@ -0,0 +1,122 @@
+package org.repositoryminer.scm;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FilenameUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.repositoryminer.RepositoryMinerException;
+
+/**
+ * Serves the files of a commit from the Git object database. The tree is
+ * listed once, and the blobs are only read when their content is requested.
+ */
+class GitSnapshot implements ISnapshot {
+
+	private String commit;
+	private ObjectReader reader;
+	private Map<String, ObjectId> files = new LinkedHashMap<String, ObjectId>();
+
+	/**
+	 * @param repository
+	 *            the Git repository.
+	 * @param commitId
+	 *            the commit of the snapshot.
+	 * @param filter
+	 *            selects the files of the snapshot.
+	 * @throws IOException
+	 */
+	GitSnapshot(Repository repository, ObjectId commitId, TreeFilter filter) throws IOException {
+		reader = repository.newObjectReader();
+		try (RevWalk revWalk = new RevWalk(reader); TreeWalk treeWalk = new TreeWalk(reader)) {
+			RevCommit revCommit = revWalk.parseCommit(commitId);
+			commit = revCommit.getName();
+
+			treeWalk.addTree(revCommit.getTree());
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(filter);
+			while (treeWalk.next()) {
+				// submodules and symbolic links have no content to analyze
+				if (treeWalk.getFileMode(0).getObjectType() == Constants.OBJ_BLOB
+						&& treeWalk.getFileMode(0) != FileMode.SYMLINK) {
+					files.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
+				}
+			}
+		} catch (IOException e) {
+			reader.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public String getCommit() {
+		return commit;
+	}
+
+	@Override
+	public List<String> getFiles() {
+		return new ArrayList<String>(files.keySet());
+	}
+
+	@Override
+	public List<String> getFiles(String extension) {
+		List<String> paths = new ArrayList<String>();
+		for (String path : files.keySet()) {
+			if (FilenameUtils.getExtension(path).equals(extension)) {
+				paths.add(path);
+			}
+		}
+		return paths;
+	}
+
+	@Override
+	public boolean exists(String path) {
+		return files.containsKey(path);
+	}
+
+	/**
+	 * @param path
+	 *            the file path.
+	 * @return the id of the file content or null if it does not exist.
+	 */
+	ObjectId getBlobId(String path) {
+		return files.get(path);
+	}
+
+	@Override
+	public byte[] getContent(String path) {
+		ObjectId blobId = files.get(path);
+		if (blobId == null) {
+			throw new RepositoryMinerException("File " + path + " does not exist in " + commit + ".");
+		}
+
+		try {
+			return reader.open(blobId, Constants.OBJ_BLOB).getBytes();
+		} catch (IOException e) {
+			throw new RepositoryMinerException(e);
+		}
+	}
+
+	@Override
+	public String getContentAsString(String path) {
+		return new String(getContent(path), StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void close() {
+		reader.close();
+	}
+
+}
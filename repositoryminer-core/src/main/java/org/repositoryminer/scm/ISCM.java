@@ -1,8 +1,14 @@
 package org.repositoryminer.scm;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
+import org.repositoryminer.analysis.SnapshotMetrics;
+import org.repositoryminer.domain.Change;
 import org.repositoryminer.domain.Commit;
 import org.repositoryminer.domain.Reference;
 import org.repositoryminer.domain.SCMType;
@@ -25,6 +31,16 @@ public interface ISCM {
 	 */
 	public void open(String path);
 
+	/**
+	 * Prepare the repository to analysis.
+	 * 
+	 * @param path
+	 *            the repository path.
+	 * @param config
+	 *            the extraction settings.
+	 */
+	public void open(String path, SCMConfig config);
+
 	/**
 	 * @return all references (e.g. tags and branches).
 	 */
@@ -41,6 +57,18 @@ public interface ISCM {
 	 */
 	public List<Commit> getCommits(int skip, int max, boolean skip_content, String branchName);
 
+	/**
+	 * Returns all the commits through a single walk over the history. The commits
+	 * are processed on demand, so the whole history is never held in memory.
+	 * 
+	 * @param skip_content
+	 *            whether the files contents should be omitted.
+	 * @param branchName
+	 *            the reference where the walk starts.
+	 * @return an iterator over the commits.
+	 */
+	public Iterator<Commit> iterateCommits(boolean skip_content, String branchName);
+
 	/**
 	 * Returns the commits with hash in the given list of hashes.
 	 * 
@@ -50,6 +78,50 @@ public interface ISCM {
 	 */
 	public List<Commit> getCommits(Set<String> selectedCommits, boolean skip_content);
 
+	/**
+	 * Returns the commits with hash in the given list of hashes, processing them
+	 * on demand. The commits are looked up directly, so the cost depends only on
+	 * the number of selected commits.
+	 * 
+	 * @param selectedCommits
+	 *            a list of commits hashes.
+	 * @param skip_content
+	 *            whether the files contents should be omitted.
+	 * @return an iterator over the selected commits.
+	 */
+	public Iterator<Commit> iterateCommits(Set<String> selectedCommits, boolean skip_content);
+
+	/**
+	 * Returns the commits reachable from some tips but not from others, processing
+	 * them on demand. Only the commits between both sets of tips are walked.
+	 * 
+	 * @param tips
+	 *            the hashes of the commits where the walk starts.
+	 * @param uninterestingTips
+	 *            the hashes of the commits whose history is not returned.
+	 * @param skip_content
+	 *            whether the files contents should be omitted.
+	 * @return an iterator over the commits.
+	 */
+	public Iterator<Commit> iterateCommits(Collection<String> tips, Collection<String> uninterestingTips,
+			boolean skip_content);
+
+	/**
+	 * @return the hashes of the commits pointed by all the references.
+	 */
+	public List<String> getTips();
+
+	/**
+	 * Checks whether some commit reachable from the given tips is no longer
+	 * reachable from the current references, which happens when the history is
+	 * rewritten or a reference is deleted.
+	 * 
+	 * @param tips
+	 *            the hashes of previously mined tips.
+	 * @return true if some commit is no longer reachable or false otherwise.
+	 */
+	public boolean isRewritten(Collection<String> tips);
+
 	/**
 	 * Gets the commit which the HEAD is pointed at.
 	 * <p>
@@ -82,6 +154,82 @@ public interface ISCM {
 	 */
 	public List<String> getCommitsNames();
 
+	/**
+	 * Extracts the changes of a commit against its first parent, with the
+	 * metrics of both versions of each file and without their content. Unlike
+	 * the changes of the mined commits, merges are diffed as well.
+	 * 
+	 * @param hash
+	 *            the commit hash.
+	 * @return the changes of the commit.
+	 */
+	public List<Change> getFirstParentChanges(String hash);
+
+	/**
+	 * Finds the commits reachable from each reference in a single walk over the
+	 * history.
+	 * 
+	 * @param references
+	 *            the references.
+	 * @return the reachability index of the references.
+	 */
+	public ReachabilityIndex getReachabilityIndex(List<Reference> references);
+
+	/**
+	 * Updates a previous reachability index with the commits added since some
+	 * tips were mined. Only the new commits and the commits between the old and
+	 * the new tip of each reference are walked. The new commits are numbered
+	 * from a given ordinal, and the stored commits keep theirs.
+	 * 
+	 * @param references
+	 *            the current references, with their tips.
+	 * @param previous
+	 *            the stored references, with their tips and commit ranges.
+	 * @param minedTips
+	 *            the tips mined when the previous index was built.
+	 * @param nextOrdinal
+	 *            the ordinal of the first new commit.
+	 * @param storedOrdinals
+	 *            finds the stored ordinals of some commit hashes.
+	 * @return the index holding the ordinals of the new commits and the ranges
+	 *         of all the references, or null if it can not be updated and must
+	 *         be rebuilt.
+	 */
+	public ReachabilityIndex updateReachabilityIndex(List<Reference> references, List<Reference> previous,
+			Collection<String> minedTips, int nextOrdinal,
+			Function<Collection<String>, Map<String, Integer>> storedOrdinals);
+
+	/**
+	 * Opens a read-only view of the files of a given point, without touching the
+	 * working copy. The snapshot must be closed after use.
+	 * 
+	 * @param point
+	 *            the snapshot point.
+	 * @return the snapshot.
+	 */
+	public ISnapshot getSnapshot(String point);
+
+	/**
+	 * Measures all the source files of a given point, read straight from the
+	 * repository. The files are analyzed in parallel when the extraction
+	 * settings allow it, and share the analysis caches with the commits.
+	 * 
+	 * @param point
+	 *            the snapshot point.
+	 * @return the metrics of the snapshot.
+	 */
+	public SnapshotMetrics getSnapshotMetrics(String point);
+
+	/**
+	 * Creates a working copy of the repository which shares its stored history,
+	 * so only the checked out files take disk space. The copy can be opened and
+	 * checked out independently.
+	 * 
+	 * @param path
+	 *            the folder of the new working copy.
+	 */
+	public void createWorkingCopy(String path);
+
 	/**
 	 * Does a checkout to a given point.
 	 * 
@@ -0,0 +1,55 @@
+package org.repositoryminer.scm;
+
+import java.util.List;
+
+/**
+ * Read-only view of the files of a repository version. The files are read
+ * straight from the repository, so no working copy is needed.
+ */
+public interface ISnapshot extends AutoCloseable {
+
+	/**
+	 * @return the hash of the commit of this version.
+	 */
+	public String getCommit();
+
+	/**
+	 * @return the paths of all files in this version.
+	 */
+	public List<String> getFiles();
+
+	/**
+	 * @param extension
+	 *            the file extension, without the dot.
+	 * @return the paths of the files with a certain extension in this version.
+	 */
+	public List<String> getFiles(String extension);
+
+	/**
+	 * @param path
+	 *            the file path.
+	 * @return true if the file exists in this version.
+	 */
+	public boolean exists(String path);
+
+	/**
+	 * @param path
+	 *            the file path.
+	 * @return the raw content of a file.
+	 */
+	public byte[] getContent(String path);
+
+	/**
+	 * @param path
+	 *            the file path.
+	 * @return the content of a file decoded as UTF-8.
+	 */
+	public String getContentAsString(String path);
+
+	/**
+	 * Releases the resources used to read the files.
+	 */
+	@Override
+	public void close();
+
+}
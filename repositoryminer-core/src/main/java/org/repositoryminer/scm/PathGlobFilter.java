@@ -0,0 +1,132 @@
+package org.repositoryminer.scm;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Selects the files of a tree walk by glob patterns and extensions, so that
+ * the files out of the mining scope are never read. A glob without a slash
+ * matches at any depth, "**" matches any number of directories, "*" and "?"
+ * do not cross a slash. Excluded directories are not walked.
+ */
+class PathGlobFilter extends TreeFilter {
+
+	private List<Pattern> includes;
+	private List<Pattern> excludes;
+	private Set<String> extensions;
+
+	private PathGlobFilter(List<Pattern> includes, List<Pattern> excludes, Set<String> extensions) {
+		this.includes = includes;
+		this.excludes = excludes;
+		this.extensions = extensions;
+	}
+
+	/**
+	 * @param config
+	 *            the SCM settings.
+	 * @return the filter of the configured paths, or {@link TreeFilter#ALL} if
+	 *         none is configured.
+	 */
+	static TreeFilter create(SCMConfig config) {
+		if (config.getIncludedPaths().isEmpty() && config.getExcludedPaths().isEmpty()
+				&& config.getExtensions().isEmpty()) {
+			return TreeFilter.ALL;
+		}
+
+		Set<String> extensions = new HashSet<String>();
+		for (String extension : config.getExtensions()) {
+			extensions.add(extension.startsWith(".") ? extension.substring(1) : extension);
+		}
+
+		return new PathGlobFilter(compile(config.getIncludedPaths()), compile(config.getExcludedPaths()),
+				extensions);
+	}
+
+	@Override
+	public boolean include(TreeWalk walker) {
+		String path = walker.getPathString();
+		if (walker.isSubtree()) {
+			return !matchesAny(excludes, path) && !matchesAny(excludes, path + "/");
+		}
+
+		if (matchesAny(excludes, path)) {
+			return false;
+		}
+		if (!includes.isEmpty() && !matchesAny(includes, path)) {
+			return false;
+		}
+		if (!extensions.isEmpty()) {
+			int i = path.lastIndexOf('.');
+			return i > path.lastIndexOf('/') && extensions.contains(path.substring(i + 1));
+		}
+		return true;
+	}
+
+	@Override
+	public boolean shouldBeRecursive() {
+		return true;
+	}
+
+	@Override
+	public TreeFilter clone() {
+		// the filter holds no state of the walk
+		return this;
+	}
+
+	private static boolean matchesAny(List<Pattern> patterns, String path) {
+		for (Pattern pattern : patterns) {
+			if (pattern.matcher(path).matches()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<Pattern> compile(List<String> globs) {
+		List<Pattern> patterns = new ArrayList<Pattern>();
+		for (String glob : globs) {
+			patterns.add(toPattern(glob));
+		}
+		return patterns;
+	}
+
+	private static Pattern toPattern(String glob) {
+		if (glob.startsWith("/")) {
+			glob = glob.substring(1);
+		} else if (glob.indexOf('/') < 0) {
+			glob = "**/" + glob;
+		}
+		if (glob.endsWith("/")) {
+			glob = glob + "**";
+		}
+
+		StringBuilder regex = new StringBuilder();
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c == '*' && glob.startsWith("**/", i)) {
+				regex.append("(.*/)?");
+				i += 2;
+			} else if (c == '*' && glob.startsWith("**", i)) {
+				regex.append(".*");
+				i++;
+			} else if (c == '*') {
+				regex.append("[^/]*");
+			} else if (c == '?') {
+				regex.append("[^/]");
+			} else {
+				regex.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+
+		// a pattern naming a directory also matches everything below it
+		regex.append("(/.*)?");
+		return Pattern.compile(regex.toString());
+	}
+
+}
@@ -0,0 +1,137 @@
+package org.repositoryminer.scm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tells which commits are reachable from each reference. Every commit gets an
+ * ordinal, parents before children, so the commits of a reference are stored
+ * as a few ordinal ranges instead of one hash per commit.
+ * <p>
+ * An index built from scratch holds the ordinals of all the commits. An index
+ * updated from a previous one holds only the ordinals of the new commits, which
+ * follow the previous ones, and the ranges of all the references.
+ */
+public class ReachabilityIndex {
+
+	private Map<String, Integer> ordinals = new HashMap<String, Integer>();
+	private Map<String, List<int[]>> ranges = new HashMap<String, List<int[]>>();
+
+	void putOrdinal(String hash, int ordinal) {
+		ordinals.put(hash, ordinal);
+	}
+
+	/*
+	 * The ordinals of a reference must be added in descending order.
+	 */
+	void addOrdinal(String path, int ordinal) {
+		List<int[]> refRanges = ranges.get(path);
+		if (refRanges == null) {
+			refRanges = new ArrayList<int[]>();
+			ranges.put(path, refRanges);
+		}
+
+		int last = refRanges.size() - 1;
+		if (last >= 0 && refRanges.get(last)[0] == ordinal + 1) {
+			refRanges.get(last)[0] = ordinal;
+		} else {
+			refRanges.add(new int[] { ordinal, ordinal });
+		}
+	}
+
+	void putRanges(String path, List<int[]> refRanges) {
+		ranges.put(path, refRanges);
+	}
+
+	/*
+	 * Adds ascending ordinals to ascending ranges, joining the adjacent ones.
+	 */
+	static List<int[]> union(List<int[]> refRanges, List<Integer> ordinals) {
+		List<int[]> all = new ArrayList<int[]>(refRanges.size() + ordinals.size());
+		int i = 0, j = 0;
+		while (i < refRanges.size() || j < ordinals.size()) {
+			int[] next;
+			if (j >= ordinals.size() || (i < refRanges.size() && refRanges.get(i)[0] <= ordinals.get(j))) {
+				next = refRanges.get(i++).clone();
+			} else {
+				next = new int[] { ordinals.get(j), ordinals.get(j) };
+				j++;
+			}
+
+			int last = all.size() - 1;
+			if (last >= 0 && next[0] <= all.get(last)[1] + 1) {
+				all.get(last)[1] = Math.max(all.get(last)[1], next[1]);
+			} else {
+				all.add(next);
+			}
+		}
+		return all;
+	}
+
+	void finish() {
+		for (List<int[]> refRanges : ranges.values()) {
+			Collections.reverse(refRanges);
+		}
+	}
+
+	/**
+	 * @return the ordinals of the commits indexed by this index, by hash.
+	 */
+	public Map<String, Integer> getOrdinals() {
+		return ordinals;
+	}
+
+	/**
+	 * @param hash
+	 *            the commit hash.
+	 * @return the commit ordinal or null if the commit is not reachable from any
+	 *         reference.
+	 */
+	public Integer getOrdinal(String hash) {
+		return ordinals.get(hash);
+	}
+
+	/**
+	 * @param path
+	 *            the reference path.
+	 * @return the ascending inclusive ranges [start, end] of the ordinals of the
+	 *         commits reachable from the reference.
+	 */
+	public List<int[]> getRanges(String path) {
+		List<int[]> refRanges = ranges.get(path);
+		return refRanges != null ? refRanges : new ArrayList<int[]>();
+	}
+
+	/**
+	 * @param path
+	 *            the reference path.
+	 * @param hash
+	 *            the commit hash.
+	 * @return true if the commit is reachable from the reference.
+	 */
+	public boolean contains(String path, String hash) {
+		Integer ordinal = ordinals.get(hash);
+		if (ordinal == null) {
+			return false;
+		}
+
+		List<int[]> refRanges = getRanges(path);
+		int low = 0, high = refRanges.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int[] range = refRanges.get(mid);
+			if (ordinal < range[0]) {
+				high = mid - 1;
+			} else if (ordinal > range[1]) {
+				low = mid + 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,129 @@
+package org.repositoryminer.scm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+
+/**
+ * Bounded in-memory cache of the renames found by similarity, keyed by the
+ * blob ids of the deleted and the added file. The same pair of blobs shows up
+ * again in other commits, such as merges diffed against their first parent,
+ * cherry-picks and rebased commits, where it is then paired without scoring
+ * the files again. The deleted blobs used least recently are evicted first.
+ */
+class RenameCache {
+
+	/*
+	 * A rename between two entries of a scan, which JGit only builds inside its
+	 * rename detector.
+	 */
+	private static class KnownRename extends DiffEntry {
+
+		private KnownRename(DiffEntry deleted, DiffEntry added, int score) {
+			this.changeType = ChangeType.RENAME;
+			this.oldPath = deleted.getOldPath();
+			this.oldMode = deleted.getOldMode();
+			this.oldId = deleted.getOldId();
+			this.newPath = added.getNewPath();
+			this.newMode = added.getNewMode();
+			this.newId = added.getNewId();
+			this.score = score;
+		}
+
+	}
+
+	private Map<AbbreviatedObjectId, Map<AbbreviatedObjectId, Integer>> entries;
+
+	/**
+	 * @param maxSize
+	 *            the maximum number of deleted blobs whose renames are cached,
+	 *            zero disables the cache.
+	 */
+	RenameCache(final int maxSize) {
+		entries = new LinkedHashMap<AbbreviatedObjectId, Map<AbbreviatedObjectId, Integer>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<AbbreviatedObjectId, Map<AbbreviatedObjectId, Integer>> eldest) {
+				return size() > maxSize;
+			}
+
+		};
+	}
+
+	/**
+	 * Pairs the deleted and added files of a scan that were renamed in a commit
+	 * seen before. The paired entries are removed from the scan.
+	 *
+	 * @param changes
+	 *            the changes of a scan, without renames.
+	 * @return the renames of the paired files.
+	 */
+	synchronized List<DiffEntry> pair(List<DiffEntry> changes) {
+		List<DiffEntry> renames = new ArrayList<DiffEntry>();
+		if (entries.isEmpty()) {
+			return renames;
+		}
+
+		Map<AbbreviatedObjectId, List<DiffEntry>> added = new HashMap<AbbreviatedObjectId, List<DiffEntry>>();
+		for (DiffEntry change : changes) {
+			if (change.getChangeType() == ChangeType.ADD) {
+				added.computeIfAbsent(change.getNewId(), id -> new ArrayList<DiffEntry>()).add(change);
+			}
+		}
+
+		Set<DiffEntry> paired = Collections.newSetFromMap(new IdentityHashMap<DiffEntry, Boolean>());
+		for (DiffEntry change : changes) {
+			Map<AbbreviatedObjectId, Integer> known = change.getChangeType() == ChangeType.DELETE
+					? entries.get(change.getOldId())
+					: null;
+			// an identical added file is left to the exact pass of the detector
+			if (known == null || added.containsKey(change.getOldId())) {
+				continue;
+			}
+
+			for (Map.Entry<AbbreviatedObjectId, Integer> rename : known.entrySet()) {
+				List<DiffEntry> candidates = added.get(rename.getKey());
+				if (candidates != null && !candidates.isEmpty()) {
+					DiffEntry add = candidates.remove(0);
+					renames.add(new KnownRename(change, add, rename.getValue()));
+					paired.add(change);
+					paired.add(add);
+					break;
+				}
+			}
+		}
+
+		changes.removeIf(paired::contains);
+		return renames;
+	}
+
+	/**
+	 * Caches the renames found by similarity. Exact renames are not cached, since
+	 * they are paired by their ids without scoring.
+	 *
+	 * @param changes
+	 *            the changes computed by a rename detector.
+	 */
+	synchronized void put(List<DiffEntry> changes) {
+		for (DiffEntry change : changes) {
+			if (change.getChangeType() == ChangeType.RENAME && change.getScore() < 100
+					&& !(change instanceof KnownRename)) {
+				entries.computeIfAbsent(change.getOldId(), id -> new HashMap<AbbreviatedObjectId, Integer>())
+						.put(change.getNewId(), change.getScore());
+			}
+		}
+	}
+
+}
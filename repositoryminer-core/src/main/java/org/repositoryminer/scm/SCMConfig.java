@@ -0,0 +1,317 @@
+package org.repositoryminer.scm;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.repositoryminer.analysis.AnalyzerType;
+
+import gastmappers.Language;
+
+/**
+ * Holds the settings used by a SCM during the extraction process.
+ */
+public class SCMConfig {
+
+	private int analysisCacheSize = 10000;
+	private String analysisCacheDirectory;
+	private int analysisThreads = 1;
+	private int analysisQueueSize = 64;
+	private int diffThreads = 1;
+	private int commitQueueSize = 16;
+	private SupportedAlgorithm diffAlgorithm;
+	private boolean statsOnly = false;
+	private List<String> includedPaths = new ArrayList<String>();
+	private List<String> excludedPaths = new ArrayList<String>();
+	private List<String> extensions = new ArrayList<String>();
+	private Integer renameLimit;
+	private int renameScore = 60;
+	private int renameCacheSize = 4096;
+	private boolean projectTotals = false;
+	private boolean touchedMethods = false;
+	private AnalyzerType analyzer = AnalyzerType.GAST;
+	private Map<String, Language> languages = new LinkedHashMap<String, Language>();
+	private Map<Language, Integer> languageConcurrency = new EnumMap<Language, Integer>(Language.class);
+	private long maxFileBytes = 0;
+	private int maxFileLines = 0;
+	private long analysisTimeout = 0;
+
+	public SCMConfig() {
+		languages.put("java", Language.JAVA);
+	}
+
+	/**
+	 * @return the maximum number of analysis results kept in memory.
+	 */
+	public int getAnalysisCacheSize() {
+		return analysisCacheSize;
+	}
+
+	public void setAnalysisCacheSize(int analysisCacheSize) {
+		this.analysisCacheSize = analysisCacheSize;
+	}
+
+	/**
+	 * @return the directory where the analysis results are persisted between
+	 *         runs, or null if they are not persisted.
+	 */
+	public String getAnalysisCacheDirectory() {
+		return analysisCacheDirectory;
+	}
+
+	public void setAnalysisCacheDirectory(String analysisCacheDirectory) {
+		this.analysisCacheDirectory = analysisCacheDirectory;
+	}
+
+	/**
+	 * @return the number of threads analyzing the changed files of a commit, one
+	 *         means the files are analyzed in the extraction thread.
+	 */
+	public int getAnalysisThreads() {
+		return analysisThreads;
+	}
+
+	public void setAnalysisThreads(int analysisThreads) {
+		this.analysisThreads = analysisThreads;
+	}
+
+	/**
+	 * @return the number of files waiting for an analysis thread before the diff
+	 *         stage starts analyzing them itself.
+	 */
+	public int getAnalysisQueueSize() {
+		return analysisQueueSize;
+	}
+
+	public void setAnalysisQueueSize(int analysisQueueSize) {
+		this.analysisQueueSize = analysisQueueSize;
+	}
+
+	/**
+	 * @return the number of threads extracting the changes of commits, one means
+	 *         the changes are extracted in the consumer thread.
+	 */
+	public int getDiffThreads() {
+		return diffThreads;
+	}
+
+	public void setDiffThreads(int diffThreads) {
+		this.diffThreads = diffThreads;
+	}
+
+	/**
+	 * @return the number of commits the history walk may run ahead of the
+	 *         consumer.
+	 */
+	public int getCommitQueueSize() {
+		return commitQueueSize;
+	}
+
+	public void setCommitQueueSize(int commitQueueSize) {
+		this.commitQueueSize = commitQueueSize;
+	}
+
+	/**
+	 * @return the algorithm used to count the lines added and removed, or null to
+	 *         use the repository setting.
+	 */
+	public SupportedAlgorithm getDiffAlgorithm() {
+		return diffAlgorithm;
+	}
+
+	public void setDiffAlgorithm(SupportedAlgorithm diffAlgorithm) {
+		this.diffAlgorithm = diffAlgorithm;
+	}
+
+	/**
+	 * @return true if the commits extracted without content only get their diff
+	 *         stats, so no file is read nor analyzed.
+	 */
+	public boolean isStatsOnly() {
+		return statsOnly;
+	}
+
+	public void setStatsOnly(boolean statsOnly) {
+		this.statsOnly = statsOnly;
+	}
+
+	/**
+	 * @return the glob patterns of the paths whose changes are extracted, all
+	 *         paths are extracted if it is empty.
+	 */
+	public List<String> getIncludedPaths() {
+		return includedPaths;
+	}
+
+	public void setIncludedPaths(List<String> includedPaths) {
+		this.includedPaths = includedPaths;
+	}
+
+	/**
+	 * @return the glob patterns of the paths whose changes are never extracted.
+	 */
+	public List<String> getExcludedPaths() {
+		return excludedPaths;
+	}
+
+	public void setExcludedPaths(List<String> excludedPaths) {
+		this.excludedPaths = excludedPaths;
+	}
+
+	/**
+	 * @return the extensions of the files whose changes are extracted, all files
+	 *         are extracted if it is empty.
+	 */
+	public List<String> getExtensions() {
+		return extensions;
+	}
+
+	public void setExtensions(List<String> extensions) {
+		this.extensions = extensions;
+	}
+
+	/**
+	 * @return the maximum number of added or deleted files of a commit whose
+	 *         similarity is scored to detect renames, or null to use the
+	 *         repository setting. Zero means no limit. Identical files are paired
+	 *         as renames regardless of the limit.
+	 */
+	public Integer getRenameLimit() {
+		return renameLimit;
+	}
+
+	public void setRenameLimit(Integer renameLimit) {
+		this.renameLimit = renameLimit;
+	}
+
+	/**
+	 * @return the minimum similarity, from 0 to 100, for a deleted and an added
+	 *         file to be paired as a rename.
+	 */
+	public int getRenameScore() {
+		return renameScore;
+	}
+
+	public void setRenameScore(int renameScore) {
+		this.renameScore = renameScore;
+	}
+
+	/**
+	 * @return the maximum number of deleted blobs whose renames found by
+	 *         similarity are kept in memory, to pair the same blobs in other
+	 *         commits without scoring them again.
+	 */
+	public int getRenameCacheSize() {
+		return renameCacheSize;
+	}
+
+	public void setRenameCacheSize(int renameCacheSize) {
+		this.renameCacheSize = renameCacheSize;
+	}
+
+	/**
+	 * @return true if the extraction keeps the project LOC and CYCLO at each
+	 *         commit. The history is then walked parents first.
+	 */
+	public boolean isProjectTotals() {
+		return projectTotals;
+	}
+
+	public void setProjectTotals(boolean projectTotals) {
+		this.projectTotals = projectTotals;
+	}
+
+	/**
+	 * @return true if each change records the methods overlapping its hunks.
+	 *         Only the names of the touched methods are recorded, both versions
+	 *         of a file are still measured whole. The GAST analyzer then runs a
+	 *         lexer pass over every file to find the lines of its methods, so
+	 *         the extraction gets slower.
+	 */
+	public boolean isTouchedMethods() {
+		return touchedMethods;
+	}
+
+	public void setTouchedMethods(boolean touchedMethods) {
+		this.touchedMethods = touchedMethods;
+	}
+
+	/**
+	 * @return the analyzer measuring the source files.
+	 */
+	public AnalyzerType getAnalyzer() {
+		return analyzer;
+	}
+
+	public void setAnalyzer(AnalyzerType analyzer) {
+		this.analyzer = analyzer;
+	}
+
+	/**
+	 * @return the languages of the analyzed files by extension, without the dot.
+	 *         Only Java files are analyzed by default, other languages such as
+	 *         C# are added by extension.
+	 */
+	public Map<String, Language> getLanguages() {
+		return languages;
+	}
+
+	public void setLanguages(Map<String, Language> languages) {
+		this.languages = languages;
+	}
+
+	/**
+	 * @return the maximum number of files of each language analyzed at the same
+	 *         time. Languages without a limit are only bound by the number of
+	 *         analysis threads, unless an analysis timeout is set. Their limit is
+	 *         then the largest of the number of processors and of analysis and
+	 *         diff threads, since an abandoned analysis keeps running.
+	 */
+	public Map<Language, Integer> getLanguageConcurrency() {
+		return languageConcurrency;
+	}
+
+	public void setLanguageConcurrency(Map<Language, Integer> languageConcurrency) {
+		this.languageConcurrency = languageConcurrency;
+	}
+
+	/**
+	 * @return the size in bytes above which a file is not analyzed, zero means
+	 *         no limit.
+	 */
+	public long getMaxFileBytes() {
+		return maxFileBytes;
+	}
+
+	public void setMaxFileBytes(long maxFileBytes) {
+		this.maxFileBytes = maxFileBytes;
+	}
+
+	/**
+	 * @return the number of lines above which a file is not analyzed, zero means
+	 *         no limit.
+	 */
+	public int getMaxFileLines() {
+		return maxFileLines;
+	}
+
+	public void setMaxFileLines(int maxFileLines) {
+		this.maxFileLines = maxFileLines;
+	}
+
+	/**
+	 * @return the milliseconds after which the analysis of a file is cancelled,
+	 *         zero means no limit.
+	 */
+	public long getAnalysisTimeout() {
+		return analysisTimeout;
+	}
+
+	public void setAnalysisTimeout(long analysisTimeout) {
+		this.analysisTimeout = analysisTimeout;
+	}
+
+}
@@ -0,0 +1,74 @@
+package org.repositoryminer.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.repositoryminer.domain.Class;
+import org.repositoryminer.domain.Method;
+import org.repositoryminer.domain.Package;
+
+public class LexerAnalyzerTest {
+
+	@Test
+	public void contextualKeywordInMethodBodyDoesNotDeclareType() throws Exception {
+		String source = "package p;\n"
+				+ "class A {\n"
+				+ "  void run(Object record, java.util.List<String> list) {\n"
+				+ "    if (record instanceof String) {\n"
+				+ "      list.forEach(x -> {\n"
+				+ "        System.out.println(x);\n"
+				+ "      });\n"
+				+ "    }\n"
+				+ "  }\n"
+				+ "}\n";
+
+		AnalysisResult result = new LexerAnalyzer().analyze(source);
+
+		assertEquals(list("A.run"), methodNames(result));
+		assertEquals(7, result.getLoc());
+		assertEquals(2, result.getCyclo());
+	}
+
+	@Test
+	public void recordDeclaresType() throws Exception {
+		String source = "record Point(int x, int y) {\n"
+				+ "  int sum() {\n"
+				+ "    return x > 0 ? x + y : y;\n"
+				+ "  }\n"
+				+ "}\n"
+				+ "class B {\n"
+				+ "  Object record;\n"
+				+ "  void set(Object record) {\n"
+				+ "    this.record = record;\n"
+				+ "  }\n"
+				+ "}\n";
+
+		AnalysisResult result = new LexerAnalyzer().analyze(source);
+
+		assertEquals(list("Point.sum", "B.set"), methodNames(result));
+	}
+
+	private static List<String> methodNames(AnalysisResult result) {
+		List<String> names = new ArrayList<String>();
+		for (Package p : result.getPackages()) {
+			for (Class c : p.getClasses()) {
+				for (Method m : c.getMethods()) {
+					names.add(c.getName() + "." + m.getName());
+				}
+			}
+		}
+		return names;
+	}
+
+	private static List<String> list(String... names) {
+		List<String> list = new ArrayList<String>();
+		for (String name : names) {
+			list.add(name);
+		}
+		return list;
+	}
+
+}